@@ -19,6 +19,14 @@ public class Car {
         return year;
     }
 
+    public String getMake() {
+        return make;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
     public String toString() {
         return make + " " + model + " " + year + " - $" + price + "0";
     }
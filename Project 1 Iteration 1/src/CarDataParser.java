@@ -0,0 +1,365 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// This class reads car data in the "floor space year price make model" format one line at a
+// time. It scans raw bytes from a reusable buffer and parses numbers in place, so the only objects
+// it creates per line are the make and model strings. Call nextLine() until it returns false and
+// check hasError() before reading the fields of each line.
+public class CarDataParser implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Prices above this many cents are rejected, which keeps the parsed value from overflowing and exact
+    // as a double.
+    private static final long MAX_PRICE_CENTS = 9_999_999_999_999L;
+
+    private InputStream in;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private boolean endOfInput;
+
+    private int lineNumber;
+    private int lineStart;
+    private int lineEnd;
+
+    private int floor;
+    private int space;
+    private int year;
+    private long priceCents;
+    private String make;
+    private String model;
+    private String error;
+
+    // The constructor takes the stream to read from. The stream is closed when the parser is closed.
+    public CarDataParser(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    // This method reads the next non-blank line. It returns false once the input is exhausted. If the
+    // line is malformed, hasError() returns true and getError() describes the problem.
+    public boolean nextLine() throws IOException {
+
+        while (findLine()) {
+            lineNumber++;
+            skipSpaces();
+
+            if (lineStart < lineEnd) {
+                parseLine();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    // This method returns the error message for the current line, prefixed with its line number.
+    public String getError() {
+        return error;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public int getSpace() {
+        return space;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public double getPrice() {
+        return priceCents / 100.0;
+    }
+
+    public String getMake() {
+        return make;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // This method parses the fields of the current line. It stops at the first malformed field.
+    private void parseLine() {
+
+        error = null;
+
+        floor = nextInt("floor");
+        space = nextInt("space");
+        year = nextInt("year");
+
+        if (error != null) {
+            return;
+        }
+
+        priceCents = nextPriceCents();
+        make = nextString("make");
+        model = nextString("model");
+
+        skipSpaces();
+
+        if (error == null && lineStart < lineEnd) {
+            fail("unexpected data after model");
+        }
+    }
+
+    // This method parses a non-negative integer field.
+    private int nextInt(String field) {
+
+        if (error != null) {
+            return 0;
+        }
+
+        skipSpaces();
+
+        int start = lineStart;
+        int end = tokenEnd();
+        int value = 0;
+
+        if (start == end || end - start > 9) {
+            fail("invalid " + field);
+            return 0;
+        }
+
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+
+            if (digit < 0 || digit > 9) {
+                fail("invalid " + field);
+                return 0;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        lineStart = end;
+        return value;
+    }
+
+    // This method parses a price such as 28000 or 28000.00 into whole cents. Digits after the
+    // second decimal place are rounded. A price needs at least one digit and may not exceed
+    // MAX_PRICE_CENTS.
+    private long nextPriceCents() {
+
+        if (error != null) {
+            return 0;
+        }
+
+        skipSpaces();
+
+        int start = lineStart;
+        int end = tokenEnd();
+        long cents = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        boolean hasDigit = false;
+
+        if (start == end || end - start > 18) {
+            fail("invalid price");
+            return 0;
+        }
+
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+
+            int digit = b - '0';
+
+            if (digit < 0 || digit > 9) {
+                fail("invalid price");
+                return 0;
+            }
+
+            hasDigit = true;
+
+            if (decimals < 0) {
+                cents = cents * 10 + digit;
+            }
+
+            else if (decimals < 2) {
+                cents = cents * 10 + digit;
+                decimals++;
+            }
+
+            else if (decimals == 2) {
+                roundUp = digit >= 5;
+                decimals++;
+            }
+
+            if (cents > MAX_PRICE_CENTS) {
+                fail("price too large");
+                return 0;
+            }
+        }
+
+        if (!hasDigit) {
+            fail("invalid price");
+            return 0;
+        }
+
+        for (int i = Math.max(decimals, 0); i < 2; i++) {
+            cents *= 10;
+        }
+
+        if (roundUp) {
+            cents++;
+        }
+
+        if (cents > MAX_PRICE_CENTS) {
+            fail("price too large");
+            return 0;
+        }
+
+        lineStart = end;
+        return cents;
+    }
+
+    // This method returns the next whitespace-delimited field as a string.
+    private String nextString(String field) {
+
+        if (error != null) {
+            return null;
+        }
+
+        skipSpaces();
+
+        int start = lineStart;
+        int end = tokenEnd();
+
+        if (start == end) {
+            fail("missing " + field);
+            return null;
+        }
+
+        lineStart = end;
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // This method records an error for the current line.
+    private void fail(String message) {
+        error = "Line " + lineNumber + ": " + message;
+    }
+
+    // This method advances lineStart past spaces and tabs.
+    private void skipSpaces() {
+        while (lineStart < lineEnd && isSpace(buffer[lineStart])) {
+            lineStart++;
+        }
+    }
+
+    // This method returns the index just past the token that starts at lineStart.
+    private int tokenEnd() {
+        int end = lineStart;
+
+        while (end < lineEnd && !isSpace(buffer[end])) {
+            end++;
+        }
+
+        return end;
+    }
+
+    // This method sets lineStart and lineEnd around the next line in the buffer, reading more input
+    // if needed. It returns false when there are no more lines.
+    private boolean findLine() throws IOException {
+
+        int scan = pos;
+
+        while (true) {
+
+            while (scan < limit) {
+                if (buffer[scan] == '\n') {
+                    setLine(pos, scan);
+                    pos = scan + 1;
+                    return true;
+                }
+
+                scan++;
+            }
+
+            if (endOfInput) {
+                if (pos == limit) {
+                    return false;
+                }
+
+                setLine(pos, limit);
+                pos = limit;
+                return true;
+            }
+
+            scan -= pos;
+            fill();
+        }
+    }
+
+    // This method marks the bytes from start to end as the current line, dropping a trailing '\r'.
+    private void setLine(int start, int end) {
+
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+
+        lineStart = start;
+        lineEnd = end;
+    }
+
+    // This method moves any unread bytes to the front of the buffer and reads more input after them.
+    // The buffer doubles if a single line does not fit.
+    private void fill() throws IOException {
+
+        int remaining = limit - pos;
+
+        if (remaining == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, pos, larger, 0, remaining);
+            buffer = larger;
+        }
+
+        else {
+            System.arraycopy(buffer, pos, buffer, 0, remaining);
+        }
+
+        pos = 0;
+        limit = remaining;
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+
+        if (read < 0) {
+            endOfInput = true;
+        }
+
+        else {
+            limit += read;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// This class writes listings of cars through one reusable character buffer. Numbers and prices are
+// formatted digit by digit straight into the buffer, so printing a car creates no temporary strings,
+// and the buffer goes to the writer in large blocks instead of one console call per line.
+public class InventoryRenderer {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_LINE = 256;
+
+    private Writer out;
+    private char[] buffer;
+    private int length;
+
+    // The constructor takes the writer that receives the listing.
+    public InventoryRenderer(Writer out) {
+        this.out = out;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    // This constructor writes to a stream such as System.out.
+    public InventoryRenderer(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    // This method writes a car in the same form as toString(), e.g. "Toyota Corolla 2018 - $24000.00".
+    public InventoryRenderer writeCar(Car car) {
+
+        ensureRoom(MAX_LINE + car.getMake().length() + car.getModel().length());
+        appendCar(car);
+        append('\n');
+        return this;
+    }
+
+    // This method writes one space of the vending machine display, e.g. "  Space2: EMPTY".
+    public InventoryRenderer writeSpace(int space, Car car) {
+
+        ensureRoom(car == null ? MAX_LINE : MAX_LINE + car.getMake().length() + car.getModel().length());
+        append("  Space");
+        append(space);
+        append(": ");
+
+        if (car == null) {
+            append("EMPTY");
+        }
+
+        else {
+            appendCar(car);
+        }
+
+        append('\n');
+        return this;
+    }
+
+    // This method writes a floor heading of the vending machine display, e.g. "Floor 1:".
+    public InventoryRenderer writeFloor(int floor) {
+
+        ensureRoom(MAX_LINE);
+        append("Floor ");
+        append(floor);
+        append(':');
+        append('\n');
+        return this;
+    }
+
+    // This method writes a line of text.
+    public InventoryRenderer writeLine(String text) {
+
+        ensureRoom(text.length() + 1);
+        append(text);
+        append('\n');
+        return this;
+    }
+
+    // This method sends everything buffered so far to the writer.
+    public void flush() {
+
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+            length = 0;
+        }
+
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void appendCar(Car car) {
+        append(car.getMake());
+        append(' ');
+        append(car.getModel());
+        append(' ');
+        append(car.getYear());
+        append(" - ");
+        appendPrice(Math.round(car.getPrice() * 100));
+    }
+
+    // This method appends a price in cents as dollars with two decimals, e.g. $28000.50.
+    private void appendPrice(long cents) {
+
+        append('$');
+
+        if (cents < 0) {
+            append('-');
+            cents = -cents;
+        }
+
+        append(cents / 100);
+        append('.');
+        append((char) ('0' + cents % 100 / 10));
+        append((char) ('0' + cents % 10));
+    }
+
+    // This method appends the decimal digits of a number without creating a string.
+    private void append(long value) {
+
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+
+        int digits = 1;
+
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        length += digits;
+    }
+
+    private void append(String text) {
+        text.getChars(0, text.length(), buffer, length);
+        length += text.length();
+    }
+
+    private void append(char c) {
+        buffer[length++] = c;
+    }
+
+    // This method flushes the buffer if the next line might not fit, and grows it for very long lines.
+    private void ensureRoom(int needed) {
+
+        if (length + needed > buffer.length) {
+            flush();
+        }
+
+        if (needed > buffer.length) {
+            buffer = new char[needed];
+        }
+    }
+}
@@ -1,9 +1,7 @@
-import java.util.Scanner;
-import java.util.InputMismatchException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
 
 class VendingMachine {
     private Car[][] cars;
@@ -13,63 +11,38 @@ class VendingMachine {
     }
 
     public void loadCarData(String filePath) {
-        
-        int floor;
-        int space;
-        int year;
-        double price;
-        String make;
-        String model;
-        File userFile;
-        Scanner scanner = null;
 
-        try {
-                    
-            userFile = new File(filePath);
-            scanner = new Scanner(userFile);
+        try (CarDataParser parser = new CarDataParser(new FileInputStream(filePath))) {
 
-            while (scanner.hasNextLine()) {
+            while (parser.nextLine()) {
 
-                floor = scanner.nextInt();
-                space = scanner.nextInt();
-                year = scanner.nextInt();
-                price = scanner.nextDouble();
-                make = scanner.next();
-                model = scanner.next();
+                int floor = parser.getFloor();
+                int space = parser.getSpace();
 
-                if (cars[floor][space] == null) {
-                    cars[floor][space] = new Car(year, price, make, model);
+                if (parser.hasError()) {
+                    System.out.println("Error: Invalid File Format. " + parser.getError());
                 }
 
-                else {
-                    throw new Exception();
+                else if (floor >= cars.length || space >= cars[floor].length) {
+                    System.out.println("Error: Attempted to Place Car in an Invalid Space. Line " + parser.getLineNumber());
                 }
-            }
-        }
-            
-        catch (Exception e) {   
-            
-            if (e instanceof FileNotFoundException) {
-                System.out.println("Error: File not Found.");
-            }
 
-            else if (e instanceof ArrayIndexOutOfBoundsException) {
-                System.out.println("Error: Attempted to Place Car in an Invalid Space");
-            }
+                else if (cars[floor][space] != null) {
+                    System.out.println("Error: Attempted to Place Car in an Occupied Space. Line " + parser.getLineNumber());
+                }
 
-            else if (e instanceof InputMismatchException || e instanceof NoSuchElementException) {
-                System.out.println("Error: Invalid File Format.");
+                else {
+                    cars[floor][space] = new Car(parser.getYear(), parser.getPrice(), parser.getMake(), parser.getModel());
+                }
             }
+        }
 
-            else {
-                System.out.println("Error: Attempted to Place Car in an Occupied Space");
-            }
+        catch (FileNotFoundException e) {
+            System.out.println("Error: File not Found.");
         }
-        
-        finally {
-            if (scanner != null) {
-                scanner.close();
-            }
+
+        catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
         }
     }
 
@@ -91,21 +64,17 @@ class VendingMachine {
         }
 
         else {
+            InventoryRenderer renderer = new InventoryRenderer(System.out);
+
             for (int floor = 1; floor <= cars.length; floor++) {
-                System.out.println("Floor " + floor + ":");
+                renderer.writeFloor(floor);
                 
                 for (int space = 1; space <= cars[floor - 1].length; space++) {
-                    System.out.print("  Space" + space + ": ");
-                    
-                    if (cars[floor - 1][space - 1] != null) {
-                        System.out.println(cars[floor - 1][space - 1].toString());
-                    }
-    
-                    else {
-                        System.out.println("EMPTY");
-                    }
+                    renderer.writeSpace(space, cars[floor - 1][space - 1]);
                 }
             }
+
+            renderer.flush();
         }
     }
 
@@ -150,9 +119,13 @@ class VendingMachine {
                 }
             }
 
+            InventoryRenderer renderer = new InventoryRenderer(System.out);
+
             for (Car car : cars) {
-                System.out.println(car.toString());
+                renderer.writeCar(car);
             }
+
+            renderer.flush();
 		}
     }
 
@@ -197,9 +170,13 @@ class VendingMachine {
                 }
             }
 
+            InventoryRenderer renderer = new InventoryRenderer(System.out);
+
             for (Car car : cars) {
-                System.out.println(car.toString());
+                renderer.writeCar(car);
             }
+
+            renderer.flush();
 		}
     } 
 
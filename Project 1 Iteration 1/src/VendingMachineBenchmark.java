@@ -0,0 +1,135 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+// This program times the Car[][] vending machine for several inventory sizes and lot shapes, so it can
+// be compared with the Iteration 2 benchmark of the same name. The sorted listings use a bubble sort and
+// are skipped above MAX_SORTED_CARS. Arguments are inventory sizes followed by lot shapes, e.g.
+// java -Xmx8g VendingMachineBenchmark 1000 100000 10000000 square wide tall
+public class VendingMachineBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int MAX_SORTED_CARS = 20_000;
+    private static final String[] MAKES = { "Toyota", "Honda", "Ford", "Chevrolet", "Tesla", "BMW" };
+
+    private static PrintStream console = System.out;
+    private static PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    public static void main(String[] args) throws IOException {
+
+        int[] sizes = { 1_000, 100_000 };
+        String[] shapes = { "square", "wide", "tall" };
+
+        if (args.length > 0) {
+            sizes = Arrays.stream(args).filter(arg -> arg.matches("\\d+")).mapToInt(Integer::parseInt).toArray();
+            String[] named = Arrays.stream(args).filter(arg -> !arg.matches("\\d+")).toArray(String[]::new);
+            shapes = named.length > 0 ? named : new String[] { "square" };
+        }
+
+        console.printf("%-26s %-8s %-14s %14s %14s%n", "benchmark", "cars", "lot", "ns/op", "ops/s");
+
+        for (int size : sizes) {
+            for (String shape : shapes) {
+                run(size, shape);
+            }
+        }
+    }
+
+    // This method runs every benchmark for one inventory size and lot shape.
+    private static void run(int size, String shape) throws IOException {
+
+        int[] lot = lotShape(size, shape);
+        int floors = lot[0];
+        int spaces = lot[1];
+        String label = floors + "x" + spaces;
+        int sample = Math.min(size, 100_000);
+        Random random = new Random(42);
+
+        File feed = File.createTempFile("cars", ".txt");
+        feed.deleteOnExit();
+        writeFeed(feed, size, spaces);
+
+        measure("loadCarData", size, label, size, () -> new VendingMachine(floors, spaces).loadCarData(feed.getPath()));
+
+        VendingMachine vendingMachine = new VendingMachine(floors, spaces);
+        vendingMachine.loadCarData(feed.getPath());
+
+        measure("retriveCarFromInventory", size, label, sample, () -> {
+            for (int i = 0; i < sample; i++) {
+                vendingMachine.retriveCarFromInventory(random.nextInt(floors) + 1, random.nextInt(spaces) + 1);
+            }
+        });
+
+        measure("displayVendingMachine", size, label, 1, vendingMachine::displayVendingMachine);
+
+        if (size <= MAX_SORTED_CARS) {
+            measure("printSortedInventoryPrice", size, label, 1, vendingMachine::printSortedInventoryPrice);
+            measure("printSortedInventoryYear", size, label, 1, vendingMachine::printSortedInventoryYear);
+        }
+
+        feed.delete();
+    }
+
+    // This method warms up and then times an operation. It prints the mean time per operation over the
+    // measured rounds, where one round performs the given number of operations.
+    private static void measure(String name, int size, String lot, int operations, Runnable round) {
+
+        System.setOut(discard);
+
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                round.run();
+            }
+
+            long start = System.nanoTime();
+
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                round.run();
+            }
+
+            double nanosPerOp = (System.nanoTime() - start) / (double) MEASURED_ROUNDS / operations;
+            console.printf("%-26s %-8d %-14s %,14.1f %,14.0f%n", name, size, lot, nanosPerOp, 1e9 / nanosPerOp);
+        }
+
+        finally {
+            System.setOut(console);
+        }
+    }
+
+    // This method writes a feed that fills the lot from the first slot onwards, using the 0-based
+    // positions loadCarData expects.
+    private static void writeFeed(File file, int size, int spaces) throws IOException {
+
+        Random random = new Random(7);
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+
+            for (int i = 0; i < size; i++) {
+                writer.write((i / spaces) + " " + (i % spaces) + " " + (1990 + random.nextInt(35)) + " "
+                    + (5000 + random.nextInt(90000)) + ".00 " + MAKES[random.nextInt(MAKES.length)] + " Model");
+                writer.newLine();
+            }
+        }
+    }
+
+    // This method returns the number of floors and spaces for a lot with room for size cars.
+    private static int[] lotShape(int size, String shape) {
+
+        if (shape.equals("wide")) {
+            return new int[] { 10, (size + 9) / 10 };
+        }
+
+        if (shape.equals("tall")) {
+            return new int[] { (size + 9) / 10, 10 };
+        }
+
+        int side = (int) Math.ceil(Math.sqrt(size));
+        return new int[] { side, side };
+    }
+}
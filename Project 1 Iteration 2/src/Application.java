@@ -1,23 +1,53 @@
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.InputMismatchException;
 import java.util.Scanner;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Map;
 
 public class Application {
 
+    // Files at least this large are parsed on all cores with ParallelCarDataLoader.
+    private static final long PARALLEL_LOAD_THRESHOLD = 16 << 20;
+
     private static VendingMachine vendingMachine;
     private static Scanner userInputScanner;
     private static boolean running;
 
+    // Run with no arguments for the interactive menu, or with "--batch <script>" to run a command script
+    // without the menu (see CommandScript). Use "-" as the script to read it from standard input, and add
+    // "--quiet" to drop everything but the summary. Options may come in any order.
     public static void main(String args[]) {
 
+        boolean batch = false;
+        boolean quiet = false;
+        String script = "-";
+
+        for (String arg : args) {
+            if (arg.equals("--batch")) {
+                batch = true;
+            }
+
+            else if (arg.equals("--quiet")) {
+                quiet = true;
+            }
+
+            else if (arg.startsWith("--")) {
+                System.out.println("Error: Unknown option " + arg + ".");
+                return;
+            }
+
+            else {
+                script = arg;
+            }
+        }
+
+        if (batch) {
+            runBatch(script, quiet);
+            return;
+        }
+
         int command;
         userInputScanner = new Scanner(System.in);
         running = true;
@@ -31,6 +61,18 @@ public class Application {
         }
     }
 
+    // This method runs a command script, or standard input if the script is "-".
+    private static void runBatch(String script, boolean quiet) {
+
+        try (InputStream in = script.equals("-") ? System.in : new FileInputStream(script)) {
+            CommandScript.run(in, quiet);
+        }
+
+        catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
     private static void displayMenu() {
 
         System.out.println();
@@ -65,51 +107,74 @@ public class Application {
         vendingMachine = new VendingMachine(floors, spaces);
     }
 
-    // This method loads a file from a local directory and stores the cars into a 2D-Array.
-    private static void loadCarData(VendingMachine vendingMachine, String filePath) {
-    
-        int floor;
-        int space;
-        int year;
-        double price;
-        String make;
-        String model;
-        String type;
+    // This method loads a file from a local directory and stores the cars in the vending machine.
+    // Malformed lines are reported with their line number and skipped.
+    static void loadCarData(VendingMachine vendingMachine, String filePath) {
 
-        File userFile;
-        Scanner scanner = null;
+        VendingMachineMetrics metrics = vendingMachine.getMetrics();
+        long start = metrics == null ? 0 : metrics.start(VendingMachineMetrics.Operation.LOAD_CAR_DATA);
+        boolean loaded;
 
-        try {
-                    
-            userFile = new File(filePath);
-            scanner = new Scanner(userFile);
-
-            while (scanner.hasNextLine()) {
-
-                type = scanner.next(); 
-                floor = scanner.nextInt();
-                space = scanner.nextInt();
-                year = scanner.nextInt();
-                price = scanner.nextDouble();
-                make = scanner.next();
-                model = scanner.next();
-
-                if (type.equalsIgnoreCase("p")) {
-                    vendingMachine.addCar(new PremiumCar(year, price, make, model), floor, space);
+        if (new File(filePath).length() >= PARALLEL_LOAD_THRESHOLD) {
+            loaded = loadCarDataInParallel(vendingMachine, filePath);
+        }
+
+        else {
+            loaded = loadCarDataInSequence(vendingMachine, filePath);
+        }
+
+        if (metrics != null) {
+            metrics.end(VendingMachineMetrics.Operation.LOAD_CAR_DATA, start, loaded);
+        }
+    }
+
+    // This method loads a file on the current thread and returns false if it could not be read.
+    private static boolean loadCarDataInSequence(VendingMachine vendingMachine, String filePath) {
+
+        try (CarDataParser parser = new CarDataParser(new FileInputStream(filePath))) {
+
+            while (parser.nextLine()) {
+
+                if (parser.hasError()) {
+                    System.out.println("Error: " + parser.getError());
+                }
+
+                else if (parser.getType() == 'P') {
+                    vendingMachine.addCar(new PremiumCar(parser.getYear(), parser.getPrice(), parser.getMakeId(),
+                        parser.getModelId()), parser.getFloor(), parser.getSpace());
                 }
-                
-                else if (type.equalsIgnoreCase("b")) {
-                    vendingMachine.addCar(new BasicCar(year, price, make, model), floor, space);
+
+                else {
+                    vendingMachine.addCar(new BasicCar(parser.getYear(), parser.getPrice(), parser.getMakeId(),
+                        parser.getModelId()), parser.getFloor(), parser.getSpace());
                 }
             }
+
+            return true;
         }
 
-        // If the file is not found, the method throws an exception.
-        catch (FileNotFoundException e) {
+        // If the file is not found or cannot be read, the method prints the exception.
+        catch (IOException e) {
             System.out.println(e);
+            return false;
         }
     }   
 
+    // This method loads a large file on the fork-join pool. Slot conflicts are resolved in file order, the
+    // same as a sequential load. It returns false if the file could not be read.
+    private static boolean loadCarDataInParallel(VendingMachine vendingMachine, String filePath) {
+
+        try {
+            new ParallelCarDataLoader().load(vendingMachine, Paths.get(filePath));
+            return true;
+        }
+
+        catch (IOException e) {
+            System.out.println(e);
+            return false;
+        }
+    }
+
     // This method gets a command from the user.
     private static int getCommand() {
         int command = -1;
@@ -240,295 +305,3 @@ public class Application {
         return type;
     }
 }
-
-
-
-
-
-class VendingMachine {
-    
-    private int floors;
-    private int spaces;
-
-    private List<Car> cars;
-    private HashMap<List<Integer>, Car> carsByPos;
-    private HashMap<String, List<Car>> carsByManufacturer;
-    private Queue<Car> carWashQueue;
-
-    // The constructor that initializes the data structures and data members. It takes two ints
-    // that define the size of the vending machine.
-    public VendingMachine(int floors, int spaces) {
-
-        this.floors = floors;
-        this.spaces = spaces;
-        cars = new LinkedList<>();
-        carsByPos = new HashMap<>();
-        carsByManufacturer = new HashMap<>();
-        carWashQueue = new LinkedList<>();
-    }
-
-    // This method adds a car if the space isn't occupied and within the bounds of the vending machine.
-    public void addCar(Car car, int floor, int space) {
-
-        if (isEmptySpace(floor, space) && isValidSpace(floor, space)) {
-            cars.add(car);
-
-            List<Integer> pos = asList(floor, space);
-
-            carsByPos.put(pos, car);
-            String make = car.getMake();
-
-            if (!hasManufacturer(make)) {
-                carsByManufacturer.put(make, new ArrayList<Car>());
-            }
-
-            carsByManufacturer.get(make).add(car);
-        }
-    }
-
-    // This method sells a car given a location and prints a sold message.
-    public void sellCar(int floor, int space) {
-
-        Car car = getCar(floor, space);
-
-        if (car != null) {
-            removeCar(floor, space);
-            System.out.println("Car Sold: " + car.toString());
-        }
-    }
-
-    // This method prints a message if a car is found at the given location.
-    public void testDrive(int floor, int space) {
-        
-        Car car = getCar(floor, space);
-        
-        if (car != null) {
-            System.out.println("Car retrieved: " + car.toString());
-        }
-    }
-
-    // This method prints out the inventory.
-    public void printInventory() {
-        printCarList(cars);
-    }
- 
-    // This method prints out the inventory sorted by price or by year.
-    public void printSortedInventory(String condition) {
-
-        List<Car> sortedCars = getSorted(cars, condition);
-        printCarList(sortedCars);
-    }
-
-    // This method prints the cars in the inventory that match the make and type. It prints
-    // a message if a car is not found.
-    public void printCarsByMakeType(String make, String type) {
-
-        List<Car> matchedCars = new ArrayList<>();
-
-        for (Car car : carsByManufacturer.get("make")) {
-            if ((type.equals("P") && car instanceof PremiumCar) || (type.equals("B") && car instanceof BasicCar)) {
-                matchedCars.add(car);
-            }
-        }
-
-        if (matchedCars.size() == 0) {
-            System.out.println("No Cars Matched the Description.");
-        }
-
-        printCarList(matchedCars);
-    }
-
-    // This method adds a car to the wash queue given a location.
-    public void addCarToWash(int floor, int space) {
-
-        Car car = getCar(floor, space);
-
-        if (car != null) {
-            carWashQueue.add(car);
-        }
-    }
-
-    // This method processes the car wash queue.
-    public void processCarWashQueue() {
-        
-        if (carWashQueue.size() == 0) {
-            System.out.println("No cars in the wash queue.");
-            return;
-        }
-
-        while (carWashQueue.size() > 0) {
-            Car car = carWashQueue.poll();
-            System.out.println("Washing: " + car.toString());
-        }
-    }
-
-    // This method returns a car at a given location. It prints an error message if a car is not found and returns null.
-    private Car getCar(int floor, int space) {
-        if (isEmptySpace(floor, space)) {
-            System.out.println("Car not located at (" + floor + ", " + space + ").");
-            return null;
-        }
-
-        if (!isValidSpace(floor, space)) {
-            System.out.println("Invalid space at (" + floor + ", " + space + ").");
-            return null;
-        }
-
-        return carsByPos.get(asList(floor, space));
-    }   
-
-    // This method removes a car in a given space from all data structures.
-    private void removeCar(int floor, int space) {
-
-        List<Integer> pos = asList(floor, space);
-        Car carToRemove = carsByPos.get(pos);
-
-        cars.remove(carToRemove);
-        carsByPos.remove(pos);
-        carsByManufacturer.remove(carToRemove.getMake());
-    }
-
-    // This method returns a sorted linked list by price or by year or by .
-    private List<Car> getSorted(List<Car> cars, String condition) {
-
-        if (condition.equalsIgnoreCase("price")) {
-            cars.sort(Comparator.comparingDouble(Car::getPrice));
-            return cars;
-        }
-        
-        if (condition.equalsIgnoreCase("year")){
-            cars.sort(Comparator.comparingInt(Car::getYear));
-            return cars;
-        }
-
-        if (condition.equalsIgnoreCase("alphabetical")) {
-            cars.sort(Comparator.comparing(Car::getMake).thenComparing(Car::getModel));
-            return cars;
-        }
-
-        return null;
-    }
-
-    // This method prints out a list of cars.
-    private void printCarList(List<Car> cars) {
-        
-        if (cars.size() == 0) {
-            return;
-        }
-
-        for (Car car : cars) {
-            printCar(car);
-        }
-    }
-
-    // This method prints the information about the car and its position in the vending machine.
-    private void printCar(Car car) {
-        List<Integer> pos = getCarPos(car);
-        System.out.println(car.toString() + " (" + pos.get(0) + ", " + pos.get(1) + ")");
-    }
-
-    // This method gets the location of a car.
-    private List<Integer> getCarPos(Car car) {
-
-        for (Map.Entry<List<Integer>, Car> entry : carsByPos.entrySet()) {
-            if (car.equals(entry.getValue())) {
-                return entry.getKey();
-            }
-        }
-
-        return null;
-    }
-
-    // This method returns true if the space is within the bounds of the vending machine.
-    private boolean isValidSpace(int floor, int space) {
-        return 0 < floor && floor <= floors && 0 < spaces && space < spaces;
-    }
-
-    // This method returns true if the space is not occupied.
-    private boolean isEmptySpace(int floor, int space) {
-        List<Integer> pos = asList(floor, space);
-        return !carsByPos.keySet().contains(pos);
-    }
-
-    // This method returns true if the vending machine has at least one car with a given make.
-    private boolean hasManufacturer(String make) {
-        return carsByManufacturer.keySet().contains(make);
-    }
-
-    // This helper method allows us to instantiate and initialize values of an ArrayList in the same line.
-    private List<Integer> asList(int x, int y) {
-        List<Integer> list = new ArrayList<Integer>();
-        list.add(x);
-        list.add(y);
-        return list;
-    }
-}
-
-
-
-
-
-abstract class Car {
-    protected String make;
-    protected String model;
-    protected int year;
-    protected double price;
-
-    public Car(int year, double price, String make, String model) {
-        this.make = make;
-        this.model = model;
-        this.year = year;
-        this.price = price;
-    }
-
-    public String getMake() {
-        return make;
-    }
-
-    public String getModel() {
-        return model;
-    }
-
-    public int getYear() {
-        return year;
-    }
-
-    public double getPrice() {
-        return price;
-    }
-    
-    // This method returns a string of information regarding the car.
-    public abstract String toString();
-}
-
-
-
-
-
-class BasicCar extends Car {
-    
-    public BasicCar(int year, double price, String make, String model) {
-        super(year, price, make, model);
-    }
-    
-    @Override
-    public String toString() {
-        return "Premium Car: " + make + " " + model + " " + year + " - $" + price + "0";
-    }
-}
-
-
-
-
-
-class PremiumCar extends Car{
-    
-    public PremiumCar(int year, double price, String make, String model) {
-        super(year, price, make, model);
-    }
-    
-    @Override
-    public String toString() {
-        return "Premium Car: "  + year + make + " " + model + " " + " - $" + price + "0";
-    }
-}
\ No newline at end of file
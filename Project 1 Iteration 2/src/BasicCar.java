@@ -3,7 +3,21 @@ public class BasicCar extends Car {
     public BasicCar(int year, double price, String make, String model) {
         super(year, price, make, model);
     }
+
+    public BasicCar(int year, double price, int makeId, int modelId) {
+        super(year, price, makeId, modelId);
+    }
+
+    // This constructor makes a car with no make or model, without touching the dictionaries.
+    BasicCar(int year, double price) {
+        super(year, price);
+    }
     
+    @Override
+    public char getType() {
+        return 'B';
+    }
+
     @Override
     public String toString() {
         return "Basic Car: " + year + make + " " + model + " " + " - $" + price + "0";
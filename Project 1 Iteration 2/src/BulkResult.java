@@ -0,0 +1,111 @@
+// This class reports what happened to each item of a bulk change made with VendingMachine.addCars or
+// sellCars, in the order the items were given.
+public class BulkResult {
+
+    // This enum says what happened to one item.
+    public enum Status {
+
+        // The car was parked.
+        ADDED,
+
+        // The car was sold.
+        SOLD,
+
+        // The position is outside the vending machine.
+        INVALID_SPACE,
+
+        // Another car, possibly one earlier in the same batch, is already parked in the space.
+        SPACE_TAKEN,
+
+        // The car itself is already parked, possibly because it came earlier in the same batch.
+        ALREADY_PARKED,
+
+        // There is no car to sell in the space, possibly because it was sold earlier in the same batch.
+        NO_CAR,
+
+        // There was no free space left for the car.
+        FULL
+    }
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final byte[] statuses;
+    private final Car[] cars;
+    private final int[] floors;
+    private final int[] spaces;
+    private final int[] counts = new int[STATUSES.length];
+
+    BulkResult(int size) {
+        this.statuses = new byte[size];
+        this.cars = new Car[size];
+        this.floors = new int[size];
+        this.spaces = new int[size];
+    }
+
+    // This method records what happened to an item.
+    void set(int item, Status status, Car car, int floor, int space) {
+        statuses[item] = (byte) status.ordinal();
+        cars[item] = car;
+        floors[item] = floor;
+        spaces[item] = space;
+        counts[status.ordinal()]++;
+    }
+
+    // This method returns the number of items in the batch.
+    public int size() {
+        return statuses.length;
+    }
+
+    public Status getStatus(int item) {
+        return STATUSES[statuses[item]];
+    }
+
+    // This method returns true if an item's car was added or sold.
+    public boolean isSuccess(int item) {
+        return getStatus(item) == Status.ADDED || getStatus(item) == Status.SOLD;
+    }
+
+    // This method returns the car that was added or sold, or the car that could not be added. It returns null
+    // for a sale that failed.
+    public Car getCar(int item) {
+        return cars[item];
+    }
+
+    // This method returns the floor the item was for, or 0 if the vending machine was full. For a car that was
+    // already parked it is the floor the car is parked on.
+    public int getFloor(int item) {
+        return floors[item];
+    }
+
+    // This method returns the space the item was for, or 0 if the vending machine was full. For a car that was
+    // already parked it is the space the car is parked in.
+    public int getSpace(int item) {
+        return spaces[item];
+    }
+
+    // This method returns the number of items with a status.
+    public int getCount(Status status) {
+        return counts[status.ordinal()];
+    }
+
+    // This method returns the number of items whose car was added or sold.
+    public int getSucceededCount() {
+        return getCount(Status.ADDED) + getCount(Status.SOLD);
+    }
+
+    // This method returns the count of each status that occurred, e.g. "ADDED 950, SPACE_TAKEN 50".
+    @Override
+    public String toString() {
+
+        StringBuilder summary = new StringBuilder();
+
+        for (Status status : STATUSES) {
+            if (counts[status.ordinal()] > 0) {
+                summary.append(summary.length() > 0 ? ", " : "").append(status).append(' ')
+                    .append(counts[status.ordinal()]);
+            }
+        }
+
+        return summary.length() > 0 ? summary.toString() : "empty";
+    }
+}
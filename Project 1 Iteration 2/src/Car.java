@@ -1,12 +1,40 @@
 public abstract class Car {
+
+    // Every make and model is stored once in these dictionaries, and each car refers to its make and model
+    // by id. Cars of the same make share a single String, and indexes can compare ids instead of strings.
+    public static final StringDictionary MAKES = new StringDictionary();
+    public static final StringDictionary MODELS = new StringDictionary();
+
     protected String make;
     protected String model;
     protected int year;
     protected double price;
+    protected int makeId;
+    protected int modelId;
+    protected int floor;
+    protected int space;
 
     public Car(int year, double price, String make, String model) {
-        this.make = make;
-        this.model = model;
+        this(year, price, MAKES.idOf(make), MODELS.idOf(model));
+    }
+
+    // This constructor takes ids from the MAKES and MODELS dictionaries.
+    public Car(int year, double price, int makeId, int modelId) {
+        this.makeId = makeId;
+        this.modelId = modelId;
+        this.make = MAKES.get(makeId);
+        this.model = MODELS.get(modelId);
+        this.year = year;
+        this.price = price;
+    }
+
+    // This constructor makes a car with no make or model, such as a placeholder for the bounds of a range
+    // query. Its make and model are empty, their ids are -1, and nothing is added to the dictionaries.
+    Car(int year, double price) {
+        this.makeId = -1;
+        this.modelId = -1;
+        this.make = "";
+        this.model = "";
         this.year = year;
         this.price = price;
     }
@@ -19,6 +47,14 @@ public abstract class Car {
         return model;
     }
 
+    public int getMakeId() {
+        return makeId;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
     public int getYear() {
         return year;
     }
@@ -26,6 +62,32 @@ public abstract class Car {
     public double getPrice() {
         return price;
     }
+
+    // This method returns the price in whole cents, for exact money arithmetic.
+    public long getPriceCents() {
+        return Math.round(price * 100);
+    }
+
+    // This method returns the floor the car is parked on, or 0 if it is not in a vending machine.
+    public int getFloor() {
+        return floor;
+    }
+
+    // This method returns the space the car is parked in, or 0 if it is not in a vending machine.
+    public int getSpace() {
+        return space;
+    }
+
+    // This method records where the car is parked. The vending machine calls it whenever the car
+    // is added, moved or removed. A car is parked in at most one space at a time, and the vending
+    // machine refuses to add a car whose position is set.
+    void setPosition(int floor, int space) {
+        this.floor = floor;
+        this.space = space;
+    }
     
+    // This method returns 'B' for a basic car or 'P' for a premium car.
+    public abstract char getType();
+
     public abstract String toString();
 }
@@ -0,0 +1,330 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// This class reads car data in the "type floor space year price make model" format one line at a
+// time. A LineReader finds each line in a reusable buffer of raw bytes, and numbers are parsed in
+// place. Makes and models are looked up in Car.MAKES and Car.MODELS straight from the bytes, so a
+// line whose make and model have been seen before creates no objects at all. Call nextLine() until
+// it returns false and check hasError() before reading the fields of each line.
+public class CarDataParser implements Closeable {
+
+    // Prices above this many cents are rejected, which keeps the parsed value from overflowing and exact
+    // as a double.
+    private static final long MAX_PRICE_CENTS = 9_999_999_999_999L;
+
+    private LineReader reader;
+    private byte[] buffer;
+
+    private int lineNumber;
+    private int lineStart;
+    private int lineEnd;
+
+    private char type;
+    private int floor;
+    private int space;
+    private int year;
+    private long priceCents;
+    private int makeId;
+    private int modelId;
+    private String error;
+
+    // The constructor takes the stream to read from. The stream is closed when the parser is closed.
+    public CarDataParser(InputStream in) {
+        this.reader = new LineReader(in);
+    }
+
+    // This constructor reads the remaining bytes of a buffer, such as a memory-mapped region of a file.
+    public CarDataParser(ByteBuffer source) {
+        this.reader = new LineReader(source);
+    }
+
+    // This method reads the next non-blank line. It returns false once the input is exhausted. If the
+    // line is malformed, hasError() returns true and getError() describes the problem.
+    public boolean nextLine() throws IOException {
+
+        while (reader.nextLine()) {
+            buffer = reader.getBuffer();
+            lineStart = reader.getLineStart();
+            lineEnd = reader.getLineEnd();
+            lineNumber++;
+            skipSpaces();
+
+            if (lineStart < lineEnd) {
+                parseLine();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    // This method returns the error message for the current line, prefixed with its line number.
+    public String getError() {
+        return error == null ? null : "Line " + lineNumber + ": " + error;
+    }
+
+    // This method returns the error message for the current line without the line number.
+    public String getErrorReason() {
+        return error;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    // This method returns 'B' for a basic car or 'P' for a premium car.
+    public char getType() {
+        return type;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public int getSpace() {
+        return space;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public double getPrice() {
+        return priceCents / 100.0;
+    }
+
+    public String getMake() {
+        return Car.MAKES.get(makeId);
+    }
+
+    public String getModel() {
+        return Car.MODELS.get(modelId);
+    }
+
+    // This method returns the id of the make in Car.MAKES.
+    public int getMakeId() {
+        return makeId;
+    }
+
+    // This method returns the id of the model in Car.MODELS.
+    public int getModelId() {
+        return modelId;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // This method parses the fields of the current line. It stops at the first malformed field.
+    private void parseLine() {
+
+        error = null;
+
+        int start = lineStart;
+        int end = tokenEnd();
+
+        if (end - start != 1 || !isType(buffer[start])) {
+            fail("unknown car type");
+            return;
+        }
+
+        type = (char) (buffer[start] & 0xDF);
+        lineStart = end;
+
+        floor = nextInt("floor");
+        space = nextInt("space");
+        year = nextInt("year");
+
+        if (error != null) {
+            return;
+        }
+
+        priceCents = nextPriceCents();
+        makeId = nextId("make", Car.MAKES);
+        modelId = nextId("model", Car.MODELS);
+
+        skipSpaces();
+
+        if (error == null && lineStart < lineEnd) {
+            fail("unexpected data after model");
+        }
+    }
+
+    // This method parses a non-negative integer field.
+    private int nextInt(String field) {
+
+        if (error != null) {
+            return 0;
+        }
+
+        skipSpaces();
+
+        int start = lineStart;
+        int end = tokenEnd();
+        int value = 0;
+
+        if (start == end || end - start > 9) {
+            fail("invalid " + field);
+            return 0;
+        }
+
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+
+            if (digit < 0 || digit > 9) {
+                fail("invalid " + field);
+                return 0;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        lineStart = end;
+        return value;
+    }
+
+    // This method parses a price such as 28000 or 28000.00 into whole cents. Digits after the
+    // second decimal place are rounded. A price needs at least one digit and may not exceed
+    // MAX_PRICE_CENTS.
+    private long nextPriceCents() {
+
+        if (error != null) {
+            return 0;
+        }
+
+        skipSpaces();
+
+        int start = lineStart;
+        int end = tokenEnd();
+        long cents = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        boolean hasDigit = false;
+
+        if (start == end || end - start > 18) {
+            fail("invalid price");
+            return 0;
+        }
+
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+
+            int digit = b - '0';
+
+            if (digit < 0 || digit > 9) {
+                fail("invalid price");
+                return 0;
+            }
+
+            hasDigit = true;
+
+            if (decimals < 0) {
+                cents = cents * 10 + digit;
+            }
+
+            else if (decimals < 2) {
+                cents = cents * 10 + digit;
+                decimals++;
+            }
+
+            else if (decimals == 2) {
+                roundUp = digit >= 5;
+                decimals++;
+            }
+
+            if (cents > MAX_PRICE_CENTS) {
+                fail("price too large");
+                return 0;
+            }
+        }
+
+        if (!hasDigit) {
+            fail("invalid price");
+            return 0;
+        }
+
+        for (int i = Math.max(decimals, 0); i < 2; i++) {
+            cents *= 10;
+        }
+
+        if (roundUp) {
+            cents++;
+        }
+
+        if (cents > MAX_PRICE_CENTS) {
+            fail("price too large");
+            return 0;
+        }
+
+        lineStart = end;
+        return cents;
+    }
+
+    // This method returns the dictionary id of the next whitespace-delimited field.
+    private int nextId(String field, StringDictionary dictionary) {
+
+        if (error != null) {
+            return -1;
+        }
+
+        skipSpaces();
+
+        int start = lineStart;
+        int end = tokenEnd();
+
+        if (start == end) {
+            fail("missing " + field);
+            return -1;
+        }
+
+        lineStart = end;
+        return dictionary.idOf(buffer, start, end - start);
+    }
+
+    // This method records an error for the current line.
+    private void fail(String message) {
+        error = message;
+    }
+
+    // This method advances lineStart past spaces and tabs.
+    private void skipSpaces() {
+        while (lineStart < lineEnd && isSpace(buffer[lineStart])) {
+            lineStart++;
+        }
+    }
+
+    // This method returns the index just past the token that starts at lineStart.
+    private int tokenEnd() {
+        int end = lineStart;
+
+        while (end < lineEnd && !isSpace(buffer[end])) {
+            end++;
+        }
+
+        return end;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isType(byte b) {
+        return b == 'B' || b == 'b' || b == 'P' || b == 'p';
+    }
+}
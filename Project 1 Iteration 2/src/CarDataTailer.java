@@ -0,0 +1,335 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// This class follows a car data file that another system keeps appending to, like tail -f. It remembers
+// how far into the file it has read, and each poll parses only the complete lines added since and passes
+// their cars to addCar, so an update costs time in proportion to what was appended, not to the file. A
+// line still being written is left for the next poll.
+//
+// start() polls whenever a WatchService reports a change to the file, and at least once per interval in
+// case an event is missed. A file that is truncated, or replaced by a new file of the same name as log
+// rotation does, is read again from the start. Replacement is noticed by a change in the file's key
+// (its inode on Unix) or in its first bytes, so a new file that has already grown past the old offset is
+// not mistaken for the old one. Cars already in the vending machine stay put, and lines for their spaces
+// are rejected by addCar as usual.
+public class CarDataTailer implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int HEAD_SIZE = 64;
+
+    private final VendingMachine vendingMachine;
+    private final Path file;
+    private final long intervalMillis;
+
+    // These fields are guarded by the tailer's monitor.
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private Object fileKey;
+    private byte[] head = new byte[0];
+    private long offset;
+    private int lineCount;
+    private long parsedCount;
+    private int restartCount;
+
+    // These fields are guarded by the tailer's monitor too. The polling thread reads watchService only
+    // after start() has set it.
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean closed;
+
+    // The constructor takes the vending machine to add cars to, the file to follow and, for start(), the
+    // longest time between polls.
+    public CarDataTailer(VendingMachine vendingMachine, Path file, long intervalMillis) {
+        this.vendingMachine = vendingMachine;
+        this.file = file;
+        this.intervalMillis = Math.max(1, intervalMillis);
+    }
+
+    // This method adds the cars on every complete line appended since the last poll and returns how many
+    // lines were parsed successfully. Malformed lines are printed with their line number in the file. A
+    // file that doesn't exist yet, for example in the middle of a rotation, has nothing to read. If addCar
+    // throws, the offset stays just past the last line that was applied, so the next poll starts at the
+    // line that failed and no car is added twice.
+    public synchronized int poll() throws IOException {
+
+        FileChannel channel;
+
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+
+        catch (NoSuchFileException e) {
+            return 0;
+        }
+
+        try (channel) {
+            Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            long size = channel.size();
+            int parsed = 0;
+
+            if (isReplaced(channel, key, size)) {
+                System.out.println("Reading " + file + " again from the start: it was truncated or replaced.");
+                offset = 0;
+                lineCount = 0;
+                head = new byte[0];
+                restartCount++;
+            }
+
+            fileKey = key;
+
+            while (offset < size) {
+                int end = readLines(channel, size);
+
+                if (end == 0) {
+                    break;
+                }
+
+                parsed += apply(end);
+            }
+
+            if (head.length < HEAD_SIZE && offset > head.length) {
+                head = readHead(channel, (int) Math.min(HEAD_SIZE, offset));
+            }
+
+            return parsed;
+        }
+    }
+
+    // This method starts a daemon thread that polls the file whenever it changes, and at least once per
+    // interval. Close the tailer to stop it.
+    public synchronized void start() throws IOException {
+
+        if (thread != null) {
+            throw new IllegalStateException("The tailer has already been started.");
+        }
+
+        if (closed) {
+            throw new IllegalStateException("The tailer has been closed.");
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+
+        thread = new Thread(this::watch, "car-data-tailer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // This method returns the byte offset just past the last line that was read.
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    // This method returns the number of lines read from the current file.
+    public synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    // This method returns the number of lines parsed successfully since the tailer was created.
+    public synchronized long getParsedCount() {
+        return parsedCount;
+    }
+
+    // This method returns how many times the file was read again from the start.
+    public synchronized int getRestartCount() {
+        return restartCount;
+    }
+
+    // This method stops the polling thread if it was started. The thread is joined outside the monitor,
+    // since it takes the monitor for each poll.
+    @Override
+    public void close() throws IOException {
+
+        WatchService watching;
+        Thread polling;
+
+        synchronized (this) {
+            closed = true;
+            watching = watchService;
+            polling = thread;
+        }
+
+        if (watching != null) {
+            watching.close();
+        }
+
+        if (polling != null && polling != Thread.currentThread()) {
+            try {
+                polling.join();
+            }
+
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // This method waits for changes to the file and polls it until the tailer is closed. A failed poll is
+    // printed and the tailer carries on from the line that failed, except when the vending machine's
+    // mutation log has failed: that failure is permanent, so every later addCar would fail the same way,
+    // and the tailer stops instead.
+    private void watch() {
+
+        while (!closed) {
+            boolean changed = true;
+
+            try {
+                WatchKey key = watchService.poll(intervalMillis, TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    changed = false;
+
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(event.context());
+                    }
+
+                    key.reset();
+                }
+
+                if (changed) {
+                    poll();
+                }
+            }
+
+            catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+
+            catch (UncheckedIOException | IllegalStateException e) {
+                System.out.println("Error: Stopped following " + file + ": " + e);
+                return;
+            }
+
+            catch (IOException | RuntimeException e) {
+                System.out.println("Error: Polling " + file + " failed: " + e);
+            }
+        }
+    }
+
+    // This method returns true if the file was truncated below the offset, or if it is a different file
+    // from the one read last time.
+    private boolean isReplaced(FileChannel channel, Object key, long size) throws IOException {
+
+        if (size < offset || (fileKey != null && key != null && !fileKey.equals(key))) {
+            return true;
+        }
+
+        return head.length > 0 && !Arrays.equals(head, readHead(channel, head.length));
+    }
+
+    // This method reads from the offset into the buffer and returns the length of the complete lines it
+    // got, or 0 if there is no complete line yet. The buffer doubles if one line does not fit.
+    private int readLines(FileChannel channel, long size) throws IOException {
+
+        while (true) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - offset));
+
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // Keep reading until the buffer holds everything asked for.
+            }
+
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return i + 1;
+                }
+            }
+
+            if (buffer.position() < buffer.capacity()) {
+                return 0;
+            }
+
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+    }
+
+    // This method adds the cars on the first length bytes of the buffer and returns how many lines were
+    // parsed successfully. The offset, line count and parsed count move past each line as soon as it has
+    // been applied.
+    private int apply(int length) throws IOException {
+
+        long start = offset;
+        int startLineCount = lineCount;
+        int consumed = 0;
+        int lines = 0;
+        int parsed = 0;
+        buffer.position(0).limit(length);
+
+        try (CarDataParser parser = new CarDataParser(buffer)) {
+
+            while (parser.nextLine()) {
+
+                if (parser.hasError()) {
+                    System.out.println("Error: Line " + (startLineCount + parser.getLineNumber()) + ": "
+                        + parser.getErrorReason());
+                }
+
+                else if (parser.getType() == 'P') {
+                    vendingMachine.addCar(new PremiumCar(parser.getYear(), parser.getPrice(), parser.getMakeId(),
+                        parser.getModelId()), parser.getFloor(), parser.getSpace());
+                    parsed++;
+                    parsedCount++;
+                }
+
+                else {
+                    vendingMachine.addCar(new BasicCar(parser.getYear(), parser.getPrice(), parser.getMakeId(),
+                        parser.getModelId()), parser.getFloor(), parser.getSpace());
+                    parsed++;
+                    parsedCount++;
+                }
+
+                while (lines < parser.getLineNumber()) {
+                    consumed = nextLineStart(consumed);
+                    lines++;
+                }
+
+                offset = start + consumed;
+                lineCount = startLineCount + lines;
+            }
+
+            offset = start + length;
+            lineCount = startLineCount + parser.getLineNumber();
+        }
+
+        return parsed;
+    }
+
+    // This method returns the index in the buffer just past the line that starts at index.
+    private int nextLineStart(int index) {
+
+        while (buffer.get(index) != '\n') {
+            index++;
+        }
+
+        return index + 1;
+    }
+
+    // This method returns the first length bytes of the file.
+    private static byte[] readHead(FileChannel channel, int length) throws IOException {
+
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+
+        while (bytes.hasRemaining() && channel.read(bytes, bytes.position()) >= 0) {
+            // Keep reading until the buffer is full or the file ends.
+        }
+
+        return Arrays.copyOf(bytes.array(), bytes.position());
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class models a car wash with several bays that share one bounded queue. Each bay runs on its own
+// thread and takes the next waiting car as soon as it is free. When the queue is full, submit() blocks
+// until a bay frees up a place, which slows down whoever is sending cars to be washed. A car submitted
+// with an event bus gets a PROCESS_WASH event once its bay has washed it, as the built-in wash queue does.
+public class CarWash {
+
+    private final BlockingQueue<WashTicket> queue;
+    private final List<Thread> bays;
+    private final long washNanos;
+    private final long startNanos;
+
+    private final LongAdder washed = new LongAdder();
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private volatile boolean open = true;
+
+    // The constructor starts one daemon thread per bay. It takes the number of bays, the number of cars
+    // that may wait in the queue, and how long one wash takes in milliseconds.
+    public CarWash(int bays, int capacity, long washMillis) {
+        this(bays, capacity, washMillis, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // This constructor takes the factory that creates the bay threads, e.g. a virtual thread factory on
+    // Java 21 or later.
+    public CarWash(int bays, int capacity, long washMillis, ThreadFactory threadFactory) {
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.bays = new ArrayList<>();
+        this.washNanos = TimeUnit.MILLISECONDS.toNanos(washMillis);
+        this.startNanos = System.nanoTime();
+
+        for (int bay = 1; bay <= bays; bay++) {
+            Thread thread = threadFactory.newThread(this::runBay);
+            thread.setName("car-wash-bay-" + bay);
+            this.bays.add(thread);
+            thread.start();
+        }
+    }
+
+    // This method puts a car in the wash queue, waiting while the queue is full. It returns false if the
+    // car wash has been closed.
+    public boolean submit(Car car) throws InterruptedException {
+        return submit(car, car.getFloor(), car.getSpace(), null);
+    }
+
+    // This method puts a car parked at a given location in the wash queue like submit(car), and publishes
+    // a PROCESS_WASH event for it to the event bus once it has been washed. The bus may be null.
+    public boolean submit(Car car, int floor, int space, InventoryEventBus eventBus) throws InterruptedException {
+
+        if (!open) {
+            return false;
+        }
+
+        queue.put(new WashTicket(car, floor, space, eventBus, System.nanoTime()));
+        return true;
+    }
+
+    // This method puts a car in the wash queue if a place frees up within the timeout. It returns false
+    // if the queue stayed full or the car wash has been closed.
+    public boolean offer(Car car, long timeout, TimeUnit unit) throws InterruptedException {
+
+        if (!open) {
+            return false;
+        }
+
+        return queue.offer(new WashTicket(car, car.getFloor(), car.getSpace(), null, System.nanoTime()), timeout,
+            unit);
+    }
+
+    // This method returns false once the car wash has been closed and no longer takes cars.
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getWashedCount() {
+        return washed.sum();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getBayCount() {
+        return bays.size();
+    }
+
+    // This method returns the cars washed per second since the car wash opened.
+    public double getThroughput() {
+        return washed.sum() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    // This method returns how long cars waited in the queue before a bay took them.
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    // This method prints throughput, queue depth and wait-time percentiles.
+    public void printStats() {
+        System.out.printf("Car wash: %d bays, %d washed, %.2f cars/s, %d waiting%n", getBayCount(),
+            getWashedCount(), getThroughput(), getQueueDepth());
+        System.out.println("Wait time: " + waitTimes.summary());
+    }
+
+    // This method stops accepting cars, lets the bays finish the cars already queued, and waits for them.
+    public void close() throws InterruptedException {
+
+        open = false;
+
+        for (int i = 0; i < bays.size(); i++) {
+            queue.put(WashTicket.CLOSED);
+        }
+
+        for (Thread bay : bays) {
+            bay.join();
+        }
+    }
+
+    // This method is the loop each bay runs: take a car, record how long it waited, wash it, then publish
+    // that it was washed.
+    private void runBay() {
+
+        try {
+            while (true) {
+                WashTicket ticket = queue.take();
+
+                if (ticket == WashTicket.CLOSED) {
+                    return;
+                }
+
+                waitTimes.record(System.nanoTime() - ticket.queuedNanos);
+
+                if (washNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(washNanos);
+                }
+
+                washed.increment();
+
+                if (ticket.eventBus != null) {
+                    ticket.eventBus.publish(InventoryEventBus.EventType.PROCESS_WASH, ticket.floor, ticket.space,
+                        ticket.car);
+                }
+            }
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // This class is a car waiting in the queue along with where it is parked, the event bus to tell once
+    // it is washed and the time it joined the queue.
+    private static class WashTicket {
+
+        static final WashTicket CLOSED = new WashTicket(null, 0, 0, null, 0);
+
+        final Car car;
+        final int floor;
+        final int space;
+        final InventoryEventBus eventBus;
+        final long queuedNanos;
+
+        WashTicket(Car car, int floor, int space, InventoryEventBus eventBus, long queuedNanos) {
+            this.car = car;
+            this.floor = floor;
+            this.space = space;
+            this.eventBus = eventBus;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+}
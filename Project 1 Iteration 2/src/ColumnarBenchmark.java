@@ -0,0 +1,77 @@
+import java.util.Random;
+
+// This program compares the heap used per car by VendingMachine and by ColumnarInventory, and times a
+// full price sort and a value scan over the columns, e.g.
+// java -Xmx4g ColumnarBenchmark 2000000
+public class ColumnarBenchmark {
+
+    private static final String[] MAKES = { "Toyota", "Honda", "Ford", "Chevrolet", "Tesla", "BMW" };
+    private static final String[] MODELS = { "Prius", "Camry", "Accord", "F150", "Traverse", "Model3" };
+
+    public static void main(String[] args) {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int spaces = 1000;
+        int floors = (size + spaces - 1) / spaces;
+
+        long baseline = usedHeap();
+        VendingMachine vendingMachine = new VendingMachine(floors, spaces);
+        fill(size, spaces, (car, floor, space) -> vendingMachine.addCar(car, floor, space));
+        long objectBytes = usedHeap() - baseline;
+
+        System.out.printf("VendingMachine:    %,d cars, %.1f bytes/car%n", size, objectBytes / (double) size);
+
+        baseline = usedHeap();
+        ColumnarInventory inventory = new ColumnarInventory(floors, spaces);
+        fill(size, spaces, inventory::addCar);
+        long columnarBytes = usedHeap() - baseline;
+
+        System.out.printf("ColumnarInventory: %,d cars, %.1f bytes/car%n", inventory.size(), columnarBytes / (double) size);
+
+        for (int round = 1; round <= 3; round++) {
+            long start = System.nanoTime();
+            long cheapest = Math.round(inventory.getSortedByPrice().get(0).getPrice());
+            long sortNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long total = inventory.getTotalValueCents();
+            long scanNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: price sort %.1f ms, value scan %.1f ms (cheapest %d, total %d)%n", round,
+                sortNanos / 1e6, scanNanos / 1e6, cheapest, total);
+        }
+    }
+
+    // This interface receives each generated car with its position.
+    private interface CarSink {
+        void accept(Car car, int floor, int space);
+    }
+
+    // This method generates size cars, filling the lot one floor at a time.
+    private static void fill(int size, int spaces, CarSink sink) {
+
+        Random random = new Random(7);
+
+        for (int i = 0; i < size; i++) {
+            int year = 1990 + random.nextInt(35);
+            double price = 5000 + random.nextInt(90000);
+            String make = new String(MAKES[random.nextInt(MAKES.length)]);
+            String model = new String(MODELS[random.nextInt(MODELS.length)]);
+            Car car = random.nextInt(3) == 0 ? new PremiumCar(year, price, make, model) : new BasicCar(year, price, make, model);
+
+            sink.accept(car, i / spaces + 1, i % spaces + 1);
+        }
+    }
+
+    // This method returns the heap in use after asking for a full collection.
+    private static long usedHeap() {
+
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// This class stores a lot's cars as columns of primitives instead of Car objects: one array each for
+// year, price in cents, tier, make id, model id and slot. Make and model ids come from Car.MAKES and
+// Car.MODELS. Row i of every column describes the same car,
+// and rows are kept packed at the front of the arrays, so scans and sorts walk contiguous memory. Car
+// objects are only created when one is asked for, as a read-only view of its row.
+public class ColumnarInventory {
+
+    private static final byte EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int floors;
+    private int spaces;
+
+    private int[] years;
+    private long[] priceCents;
+    private byte[] tiers;
+    private int[] makeIds;
+    private int[] modelIds;
+    private int[] slots;
+    private int size;
+
+    private int[] rowsBySlot;
+
+    // The constructor takes the size of the lot, like VendingMachine.
+    public ColumnarInventory(int floors, int spaces) {
+
+        this.floors = floors;
+        this.spaces = spaces;
+        years = new int[INITIAL_CAPACITY];
+        priceCents = new long[INITIAL_CAPACITY];
+        tiers = new byte[INITIAL_CAPACITY];
+        makeIds = new int[INITIAL_CAPACITY];
+        modelIds = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY];
+        rowsBySlot = new int[floors * spaces];
+
+        Arrays.fill(rowsBySlot, -1);
+    }
+
+    // This method loads a car data file straight into the columns without creating Car objects. It
+    // returns the number of cars added; malformed lines are printed and skipped.
+    public static ColumnarInventory load(String filePath, int floors, int spaces) throws IOException {
+
+        ColumnarInventory inventory = new ColumnarInventory(floors, spaces);
+
+        try (CarDataParser parser = new CarDataParser(new FileInputStream(filePath))) {
+
+            while (parser.nextLine()) {
+
+                if (parser.hasError()) {
+                    System.out.println("Error: " + parser.getError());
+                }
+
+                else {
+                    inventory.addCar(parser.getType(), parser.getFloor(), parser.getSpace(), parser.getYear(),
+                        parser.getPriceCents(), parser.getMakeId(), parser.getModelId());
+                }
+            }
+        }
+
+        return inventory;
+    }
+
+    // This method adds a car if the space is valid and empty. It returns true if the car was added.
+    public boolean addCar(Car car, int floor, int space) {
+        return addCar(car.getType(), floor, space, car.getYear(), Math.round(car.getPrice() * 100), car.getMakeId(),
+            car.getModelId());
+    }
+
+    // This method adds a car from its fields. The type is 'B' for basic or 'P' for premium, and the make
+    // and model are ids in Car.MAKES and Car.MODELS.
+    public boolean addCar(char type, int floor, int space, int year, long cents, int makeId, int modelId) {
+
+        if (!isValidSpace(floor, space) || rowsBySlot[slot(floor, space)] >= 0) {
+            return false;
+        }
+
+        if (size == years.length) {
+            grow();
+        }
+
+        int row = size++;
+        int slot = slot(floor, space);
+
+        years[row] = year;
+        priceCents[row] = cents;
+        tiers[row] = (byte) type;
+        makeIds[row] = makeId;
+        modelIds[row] = modelId;
+        slots[row] = slot;
+        rowsBySlot[slot] = row;
+        return true;
+    }
+
+    // This method removes the car in a space and returns it, or returns null if the space is empty. The
+    // last row is moved into the hole so the columns stay packed.
+    public Car removeCar(int floor, int space) {
+
+        Car car = getCar(floor, space);
+
+        if (car == null) {
+            return null;
+        }
+
+        int slot = slot(floor, space);
+        int row = rowsBySlot[slot];
+        int last = --size;
+
+        years[row] = years[last];
+        priceCents[row] = priceCents[last];
+        tiers[row] = tiers[last];
+        makeIds[row] = makeIds[last];
+        modelIds[row] = modelIds[last];
+        slots[row] = slots[last];
+        rowsBySlot[slots[row]] = row;
+        rowsBySlot[slot] = -1;
+        tiers[last] = EMPTY;
+        return car;
+    }
+
+    // This method returns a view of the car in a space, or null if the space is invalid or empty.
+    public Car getCar(int floor, int space) {
+
+        if (!isValidSpace(floor, space) || rowsBySlot[slot(floor, space)] < 0) {
+            return null;
+        }
+
+        return carAt(rowsBySlot[slot(floor, space)]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // This method returns the total price of every car in cents.
+    public long getTotalValueCents() {
+
+        long total = 0;
+
+        for (int row = 0; row < size; row++) {
+            total += priceCents[row];
+        }
+
+        return total;
+    }
+
+    // This method returns the number of cars of a given make and type without creating any Car views.
+    public int countByMakeType(String make, char type) {
+
+        int count = 0;
+        int makeId = Car.MAKES.find(make);
+
+        for (int row = 0; row < size; row++) {
+            if (makeIds[row] == makeId && tiers[row] == type) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // This method returns the cars sorted by price. The sort runs over primitive keys and the returned
+    // list creates each Car view when it is read.
+    public List<Car> getSortedByPrice() {
+        return viewOf(sortRows(priceCents));
+    }
+
+    // This method returns the cars sorted by year.
+    public List<Car> getSortedByYear() {
+
+        long[] keys = new long[size];
+
+        for (int row = 0; row < size; row++) {
+            keys[row] = years[row];
+        }
+
+        return viewOf(sortRows(keys));
+    }
+
+    // This method returns the rows ordered by a key column, with ties broken by row. Keys and rows are
+    // packed into one long when they fit, so the sort is a plain primitive sort.
+    private int[] sortRows(long[] keys) {
+
+        int rowBits = 64 - Long.numberOfLeadingZeros(Math.max(1, size));
+        long maxKey = 0;
+
+        for (int row = 0; row < size; row++) {
+            maxKey = Math.max(maxKey, keys[row]);
+        }
+
+        int[] rows = new int[size];
+
+        if (maxKey < (1L << (63 - rowBits))) {
+            long[] packed = new long[size];
+
+            for (int row = 0; row < size; row++) {
+                packed[row] = (keys[row] << rowBits) | row;
+            }
+
+            Arrays.sort(packed);
+
+            for (int i = 0; i < size; i++) {
+                rows[i] = (int) (packed[i] & ((1L << rowBits) - 1));
+            }
+
+            return rows;
+        }
+
+        Integer[] boxed = new Integer[size];
+
+        for (int row = 0; row < size; row++) {
+            boxed[row] = row;
+        }
+
+        Arrays.sort(boxed, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        for (int i = 0; i < size; i++) {
+            rows[i] = boxed[i];
+        }
+
+        return rows;
+    }
+
+    // This method returns a list that turns rows into Car views as they are read.
+    private List<Car> viewOf(int[] rows) {
+
+        return new AbstractList<Car>() {
+            @Override
+            public Car get(int index) {
+                return carAt(rows[index]);
+            }
+
+            @Override
+            public int size() {
+                return rows.length;
+            }
+        };
+    }
+
+    // This method creates a Car view of a row.
+    private Car carAt(int row) {
+
+        double price = priceCents[row] / 100.0;
+        Car car;
+
+        if (tiers[row] == 'P') {
+            car = new PremiumCar(years[row], price, makeIds[row], modelIds[row]);
+        }
+
+        else {
+            car = new BasicCar(years[row], price, makeIds[row], modelIds[row]);
+        }
+
+        car.setPosition(slots[row] / spaces + 1, slots[row] % spaces + 1);
+        return car;
+    }
+
+    // This method doubles the capacity of every column.
+    private void grow() {
+
+        int capacity = years.length * 2;
+
+        years = Arrays.copyOf(years, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        tiers = Arrays.copyOf(tiers, capacity);
+        makeIds = Arrays.copyOf(makeIds, capacity);
+        modelIds = Arrays.copyOf(modelIds, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+    }
+
+    private boolean isValidSpace(int floor, int space) {
+        return 0 < floor && floor <= floors && 0 < space && space <= spaces;
+    }
+
+    private int slot(int floor, int space) {
+        return (floor - 1) * spaces + (space - 1);
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// This class runs a script of vending machine commands without the interactive menu, for replaying
+// recorded traffic or load testing. Each line holds one command and its arguments:
+//
+//   setup <floors> <spaces> [concurrent]     must come before any other command
+//   load <file path>
+//   add <B|P> <floor> <space> <year> <price> <make> <model>
+//   display
+//   retrieve <floor> <space>
+//   sorted <price|year|alphabetical>
+//   search <make> <B|P>
+//   wash <floor> <space>
+//   process
+//   sell <floor> <space>
+//   metrics [on [sample interval]|off]      without an argument, print the metrics table
+//   exit
+//
+// Blank lines and lines starting with '#' are skipped, and a bad line is reported with its line number
+// and skipped. Output from the vending machine goes through one large buffer instead of straight to the
+// console, or is dropped entirely in quiet mode. A summary of commands run per second is printed at the
+// end.
+public class CommandScript {
+
+    // The commands in the order they are matched. The keyword of each is its name in lower case.
+    private enum Command {
+        SETUP, LOAD, ADD, DISPLAY, RETRIEVE, SORTED, SEARCH, WASH, PROCESS, SELL, METRICS, EXIT
+    }
+
+    private static final Command[] COMMANDS = Command.values();
+    private static final String[] KEYWORDS = new String[COMMANDS.length];
+
+    static {
+        for (Command command : COMMANDS) {
+            KEYWORDS[command.ordinal()] = command.name().toLowerCase();
+        }
+    }
+
+    private final PrintStream console;
+    private VendingMachine vendingMachine;
+    private long[] counts = new long[COMMANDS.length];
+    private long errors;
+
+    // This method runs a script, prints the summary to the console and returns the vending machine the
+    // script set up, or null if it had no setup command. In quiet mode everything the commands print is
+    // dropped, but errors are still counted.
+    public static VendingMachine run(InputStream in, boolean quiet) throws IOException {
+
+        PrintStream console = System.out;
+        OutputStream sink = quiet ? OutputStream.nullOutputStream()
+            : new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        PrintStream out = new PrintStream(sink, false);
+        CommandScript script = new CommandScript(console);
+        long start = System.nanoTime();
+
+        System.setOut(out);
+
+        try (CommandTokenizer tokenizer = new CommandTokenizer(in)) {
+            script.runAll(tokenizer);
+        }
+
+        finally {
+            out.flush();
+            System.setOut(console);
+        }
+
+        script.printSummary(System.nanoTime() - start);
+        return script.vendingMachine;
+    }
+
+    private CommandScript(PrintStream console) {
+        this.console = console;
+    }
+
+    // This method runs every line until the end of the script or an exit command.
+    private void runAll(CommandTokenizer tokenizer) throws IOException {
+
+        while (tokenizer.nextLine()) {
+            Command command = match(tokenizer);
+
+            if (command == null) {
+                error(tokenizer, "unknown command '" + tokenizer.getString(0) + "'");
+                continue;
+            }
+
+            if (command == Command.EXIT) {
+                counts[command.ordinal()]++;
+                return;
+            }
+
+            try {
+                runCommand(command, tokenizer);
+                counts[command.ordinal()]++;
+            }
+
+            catch (IllegalArgumentException | IllegalStateException e) {
+                error(tokenizer, e.getMessage());
+            }
+        }
+    }
+
+    // This method runs one command with the arguments on the current line.
+    private void runCommand(Command command, CommandTokenizer tokenizer) {
+
+        if (command == Command.SETUP) {
+            boolean concurrent = tokenizer.is(3, "concurrent");
+            vendingMachine = new VendingMachine(tokenizer.getInt(1), tokenizer.getInt(2), concurrent);
+            return;
+        }
+
+        if (vendingMachine == null) {
+            throw new IllegalStateException("setup must come first");
+        }
+
+        if (command == Command.LOAD) {
+            Application.loadCarData(vendingMachine, tokenizer.getRest(1));
+        }
+
+        else if (command == Command.ADD) {
+            addCar(tokenizer);
+        }
+
+        else if (command == Command.DISPLAY) {
+            vendingMachine.printInventory();
+        }
+
+        else if (command == Command.RETRIEVE) {
+            vendingMachine.testDrive(tokenizer.getInt(1), tokenizer.getInt(2));
+        }
+
+        else if (command == Command.SORTED) {
+            vendingMachine.printSortedInventory(tokenizer.getString(1));
+        }
+
+        else if (command == Command.SEARCH) {
+            vendingMachine.printCarsByMakeType(tokenizer.getString(1), tokenizer.getString(2));
+        }
+
+        else if (command == Command.WASH) {
+            vendingMachine.addCarToWash(tokenizer.getInt(1), tokenizer.getInt(2));
+        }
+
+        else if (command == Command.PROCESS) {
+            vendingMachine.processCarWashQueue();
+        }
+
+        else if (command == Command.SELL) {
+            vendingMachine.sellCar(tokenizer.getInt(1), tokenizer.getInt(2));
+        }
+
+        else if (command == Command.METRICS) {
+            runMetrics(tokenizer);
+        }
+    }
+
+    // This method attaches metrics to the vending machine, detaches them, or prints them. Metrics are
+    // printed to the console even in quiet mode.
+    private void runMetrics(CommandTokenizer tokenizer) {
+
+        if (tokenizer.is(1, "on")) {
+            int interval = tokenizer.getTokenCount() > 2 ? tokenizer.getInt(2) : 64;
+            vendingMachine.setMetrics(new VendingMachineMetrics(interval));
+        }
+
+        else if (tokenizer.is(1, "off")) {
+            vendingMachine.setMetrics(null);
+        }
+
+        else if (vendingMachine.getMetrics() == null) {
+            throw new IllegalStateException("metrics are off");
+        }
+
+        else {
+            System.out.flush();
+            console.print(vendingMachine.getMetrics().dump());
+        }
+    }
+
+    // This method adds the car described on the current line, in the same format as a car data file.
+    private void addCar(CommandTokenizer tokenizer) {
+
+        boolean premium = tokenizer.is(1, "P");
+
+        if (!premium && !tokenizer.is(1, "B")) {
+            throw new IllegalArgumentException("unknown car type");
+        }
+
+        int floor = tokenizer.getInt(2);
+        int space = tokenizer.getInt(3);
+        int year = tokenizer.getInt(4);
+        double price = Double.parseDouble(tokenizer.getString(5));
+        String make = tokenizer.getString(6);
+        String model = tokenizer.getString(7);
+        Car car = premium ? new PremiumCar(year, price, make, model) : new BasicCar(year, price, make, model);
+
+        vendingMachine.addCar(car, floor, space);
+    }
+
+    // This method returns the command named by the first token, or null.
+    private static Command match(CommandTokenizer tokenizer) {
+
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            if (tokenizer.is(0, KEYWORDS[i])) {
+                return COMMANDS[i];
+            }
+        }
+
+        return null;
+    }
+
+    private void error(CommandTokenizer tokenizer, String message) {
+        errors++;
+        System.out.println("Error: Line " + tokenizer.getLineNumber() + ": " + message);
+    }
+
+    // This method prints how many commands ran, how fast, and how many of each kind.
+    private void printSummary(long nanos) {
+
+        long total = errors;
+        StringBuilder perCommand = new StringBuilder();
+
+        for (Command command : COMMANDS) {
+            long count = counts[command.ordinal()];
+            total += count;
+
+            if (count > 0) {
+                perCommand.append(String.format("  %s %,d", KEYWORDS[command.ordinal()], count));
+            }
+        }
+
+        double seconds = nanos / 1e9;
+        System.out.printf("Batch: %,d commands in %.3f s (%,.0f commands/s), %,d errors%n", total, seconds,
+            total / Math.max(seconds, 1e-9), errors);
+        System.out.println(perCommand.toString().trim());
+    }
+}
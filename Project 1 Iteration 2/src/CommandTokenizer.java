@@ -0,0 +1,174 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// This class splits a command script into lines and whitespace-separated tokens. Like CarDataParser it
+// reads lines through a LineReader, and tokens are compared and parsed in place in their raw bytes, so
+// only tokens that are asked for as strings create objects. Blank lines and lines starting with '#' are skipped.
+public class CommandTokenizer implements Closeable {
+
+    private LineReader reader;
+    private byte[] buffer;
+
+    private int lineNumber;
+    private int lineStart;
+    private int lineEnd;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    // The constructor takes the stream to read from. The stream is closed when the tokenizer is closed.
+    public CommandTokenizer(InputStream in) {
+        this.reader = new LineReader(in);
+    }
+
+    // This method reads the next line that has a command on it. It returns false at the end of input.
+    public boolean nextLine() throws IOException {
+
+        while (reader.nextLine()) {
+            buffer = reader.getBuffer();
+            lineStart = reader.getLineStart();
+            lineEnd = reader.getLineEnd();
+            lineNumber++;
+            split();
+
+            if (count > 0 && buffer[starts[0]] != '#') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getTokenCount() {
+        return count;
+    }
+
+    // This method returns true if a token is the given keyword, ignoring ASCII case.
+    public boolean is(int token, String keyword) {
+
+        if (token >= count) {
+            return false;
+        }
+
+        int start = starts[token];
+
+        if (ends[token] - start != keyword.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            byte b = buffer[start + i];
+
+            if (b != c && b != toOtherCase(c)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // This method returns an ASCII letter in the other case, and any other character as it is.
+    private static char toOtherCase(char c) {
+
+        if (c >= 'a' && c <= 'z') {
+            return (char) (c - 'a' + 'A');
+        }
+
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c - 'A' + 'a');
+        }
+
+        return c;
+    }
+
+    // This method parses a token as a non-negative int. It throws IllegalArgumentException if the token is
+    // missing or not a number.
+    public int getInt(int token) {
+
+        if (token >= count || ends[token] - starts[token] > 9) {
+            throw new IllegalArgumentException("expected a number");
+        }
+
+        int value = 0;
+
+        for (int i = starts[token]; i < ends[token]; i++) {
+            int digit = buffer[i] - '0';
+
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("expected a number but found '" + getString(token) + "'");
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    // This method returns a token as a string. It throws IllegalArgumentException if the token is missing.
+    public String getString(int token) {
+
+        if (token >= count) {
+            throw new IllegalArgumentException("missing argument");
+        }
+
+        return new String(buffer, starts[token], ends[token] - starts[token], StandardCharsets.UTF_8);
+    }
+
+    // This method returns everything from a token to the end of the line, such as a file path with spaces.
+    public String getRest(int token) {
+
+        if (token >= count) {
+            throw new IllegalArgumentException("missing argument");
+        }
+
+        return new String(buffer, starts[token], ends[count - 1] - starts[token], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // This method records where each token of the current line starts and ends.
+    private void split() {
+
+        count = 0;
+        int i = lineStart;
+
+        while (i < lineEnd) {
+
+            while (i < lineEnd && isSpace(buffer[i])) {
+                i++;
+            }
+
+            if (i == lineEnd) {
+                break;
+            }
+
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+
+            starts[count] = i;
+
+            while (i < lineEnd && !isSpace(buffer[i])) {
+                i++;
+            }
+
+            ends[count++] = i;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.Closeable;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// This class tells other systems what happens in a vending machine: cars added, cars sold, cars queued for
+// a wash and cars washed. Attach it with VendingMachine.setEventBus, then subscribe a handler for each
+// system that wants to know, such as signage, accounting or the wash bay controller.
+//
+// Events go into a ring buffer in the style of the LMAX Disruptor. The ring's slots are preallocated as
+// parallel arrays, so publishing an event claims the next sequence number and fills in a slot without
+// creating any objects or taking any lock. Each subscriber runs on its own thread and keeps its own place
+// in the ring, reading every event published since its last batch in one go.
+//
+// Publishers never wait for subscribers. A subscriber that falls more than a ring behind loses the events
+// that were written over, and finds out from the jump in sequence numbers. A slot's published sequence is
+// checked again after its fields are read, so an event overwritten while it was being read counts as lost
+// too and is never delivered half old and half new.
+public class InventoryEventBus {
+
+    // This enum names what happened to a car.
+    public enum EventType {
+
+        // A car was parked.
+        ADD,
+
+        // A car was sold. The event has the position it was sold from.
+        SELL,
+
+        // A car was queued for a wash.
+        WASH,
+
+        // A car was washed when the wash queue was processed. There is one event per car.
+        PROCESS_WASH
+    }
+
+    // This interface receives the events of a subscription on the subscription's thread. endOfBatch is
+    // true for the last event that was ready when the batch began, which is a good time to flush.
+    public interface Handler {
+        void onEvent(Event event, boolean endOfBatch);
+    }
+
+    private static final EventType[] TYPES = EventType.values();
+    private static final int SPINS = 100;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final int capacity;
+    private final int mask;
+    private final ThreadFactory threadFactory;
+
+    // The last sequence number claimed by a publisher. Sequence numbers start at 1.
+    private final AtomicLong cursor = new AtomicLong();
+
+    // Each slot holds the sequence of the event in it, or the negated sequence while it is being written.
+    private final AtomicLongArray published;
+    private final byte[] types;
+    private final int[] floors;
+    private final int[] spaces;
+    private final Car[] cars;
+
+    // The constructor takes the number of events the ring holds, rounded up to a power of two. Subscriber
+    // threads are daemon threads.
+    public InventoryEventBus(int capacity) {
+        this(capacity, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // This constructor takes the factory that creates the subscriber threads.
+    public InventoryEventBus(int capacity, ThreadFactory threadFactory) {
+
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be from 1 to 2^30.");
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.threadFactory = threadFactory;
+        this.published = new AtomicLongArray(this.capacity);
+        this.types = new byte[this.capacity];
+        this.floors = new int[this.capacity];
+        this.spaces = new int[this.capacity];
+        this.cars = new Car[this.capacity];
+    }
+
+    // This method publishes an event and returns its sequence number. It never blocks on subscribers.
+    // Several threads may publish at once; each event still gets its own sequence number and slot.
+    public long publish(EventType type, int floor, int space, Car car) {
+
+        long sequence = cursor.incrementAndGet();
+        int index = (int) sequence & mask;
+
+        // The slot is taken over from the event a ring ago. Only if a publisher a ring behind is still
+        // writing it, which needs the whole ring to be published in the meantime, is there anything to wait
+        // for. If a publisher a ring ahead already took it, this event is lost to every subscriber.
+        while (true) {
+            long current = published.get(index);
+
+            if (current > sequence || -current > sequence) {
+                return sequence;
+            }
+
+            if (current >= 0 && published.compareAndSet(index, current, -sequence)) {
+                break;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        VarHandle.storeStoreFence();
+        types[index] = (byte) type.ordinal();
+        floors[index] = floor;
+        spaces[index] = space;
+        cars[index] = car;
+        published.lazySet(index, sequence);
+
+        return sequence;
+    }
+
+    // This method starts a subscriber thread that passes every event published from now on to the handler,
+    // at most maxBatch events per batch. Close the subscription to stop the thread.
+    public Subscription subscribe(String name, Handler handler, int maxBatch) {
+
+        Subscription subscription = new Subscription(handler, Math.max(1, maxBatch), cursor.get() + 1);
+        Thread thread = threadFactory.newThread(subscription::run);
+
+        thread.setName("event-subscriber-" + name);
+        subscription.thread = thread;
+        thread.start();
+
+        return subscription;
+    }
+
+    // This method returns the sequence number of the last event published.
+    public long getSequence() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // This class is one event as a subscriber sees it. The same object is filled in again for every event
+    // of a subscription, so a handler must copy whatever it wants to keep.
+    public static final class Event {
+
+        private long sequence;
+        private EventType type;
+        private int floor;
+        private int space;
+        private Car car;
+
+        // This method returns the event's sequence number. Each event is one more than the event before,
+        // unless the subscriber fell behind and lost events in between.
+        public long getSequence() {
+            return sequence;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        public int getFloor() {
+            return floor;
+        }
+
+        public int getSpace() {
+            return space;
+        }
+
+        public Car getCar() {
+            return car;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + type + " (" + floor + ", " + space + ") " + car;
+        }
+    }
+
+    // This class is a subscriber's place in the ring and the thread that reads from it.
+    public final class Subscription implements Closeable {
+
+        private final Handler handler;
+        private final int maxBatch;
+        private final Event event = new Event();
+        private Thread thread;
+        private volatile long next;
+        private volatile long missed;
+        private volatile boolean closed;
+
+        private Subscription(Handler handler, int maxBatch, long next) {
+            this.handler = handler;
+            this.maxBatch = maxBatch;
+            this.next = next;
+        }
+
+        // This method returns the sequence number of the last event this subscriber has dealt with, either
+        // by handling it or by losing it.
+        public long getSequence() {
+            return next - 1;
+        }
+
+        // This method returns how many events this subscriber lost by falling a ring behind.
+        public long getMissedCount() {
+            return missed;
+        }
+
+        // This method stops the subscriber thread after its current batch and waits for it to finish.
+        @Override
+        public void close() {
+
+            closed = true;
+            LockSupport.unpark(thread);
+
+            try {
+                thread.join();
+            }
+
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // This method reads batches until the subscription is closed. When nothing is ready it spins for a
+        // moment and then parks for longer and longer, up to a millisecond, so an idle subscriber costs
+        // almost nothing and publishers never have to wake it.
+        private void run() {
+
+            int idle = 0;
+
+            while (!closed) {
+                if (poll() > 0) {
+                    idle = 0;
+                }
+
+                else if (++idle < SPINS) {
+                    Thread.onSpinWait();
+                }
+
+                else {
+                    LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(idle - SPINS, 10)));
+                }
+            }
+        }
+
+        // This method hands the events that are ready to the handler and returns how many it handled. A
+        // handler that throws loses only the event it failed on.
+        private int poll() {
+
+            long sequence = next;
+            long claimed = cursor.get();
+
+            if (claimed - sequence >= capacity) {
+                missed += claimed - capacity + 1 - sequence;
+                sequence = claimed - capacity + 1;
+            }
+
+            long end = sequence - 1;
+
+            while (end < claimed && end - sequence + 1 < maxBatch && published.get((int) (end + 1) & mask) == end + 1) {
+                end++;
+            }
+
+            int handled = 0;
+
+            for (; sequence <= end; sequence++) {
+                int index = (int) sequence & mask;
+
+                event.sequence = sequence;
+                event.type = TYPES[types[index]];
+                event.floor = floors[index];
+                event.space = spaces[index];
+                event.car = cars[index];
+                VarHandle.acquireFence();
+
+                // A publisher a ring ahead took the slot while it was being read.
+                if (published.get(index) != sequence) {
+                    missed++;
+                    continue;
+                }
+
+                try {
+                    handler.onEvent(event, sequence == end);
+                }
+
+                catch (RuntimeException e) {
+                    System.out.println("Event subscriber failed on " + event + ": " + e);
+                }
+
+                handled++;
+            }
+
+            next = sequence;
+            return handled;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import java.lang.management.ManagementFactory;
+
+// This program measures what an event bus costs the vending machine. One thread adds and sells cars,
+// first without a bus, then with a bus and no subscribers, with a subscriber that keeps up, and with a
+// subscriber far too slow to keep up. It prints the time per change, the events each subscriber handled
+// and lost, and the bytes allocated per publish. The arguments are the changes and the ring capacity, e.g.
+// java InventoryEventBusBenchmark 2000000 4096
+public class InventoryEventBusBenchmark {
+
+    public static void main(String[] args) {
+
+        int changes = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        System.out.printf("%-12s %12s %12s %12s %12s%n", "subscriber", "ns/change", "changes/s", "handled", "lost");
+
+        for (int round = 1; round <= 2; round++) {
+            run("no bus", null, changes, 0);
+            run("unsubscribed", new InventoryEventBus(capacity), changes, -1);
+            run("fast", new InventoryEventBus(capacity), changes, 0);
+            run("slow", new InventoryEventBus(capacity), changes, 10_000);
+        }
+
+        printAllocation(new InventoryEventBus(capacity), changes);
+    }
+
+    // This method runs one measurement. The subscriber spends handlerNanos on each event; a negative value
+    // means no subscriber at all, and a null bus means no bus.
+    private static void run(String name, InventoryEventBus bus, int changes, long handlerNanos) {
+
+        VendingMachine vendingMachine = new VendingMachine(1, 100);
+        Car[] cars = new Car[100];
+        long[] handled = new long[1];
+        InventoryEventBus.Subscription subscription = null;
+
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = new BasicCar(2000 + i % 25, 10_000 + i, "Toyota", "Camry");
+        }
+
+        vendingMachine.setEventBus(bus);
+
+        if (bus != null && handlerNanos >= 0) {
+            subscription = bus.subscribe(name, (event, endOfBatch) -> {
+                long until = System.nanoTime() + handlerNanos;
+
+                while (handlerNanos > 0 && System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+
+                handled[0]++;
+            }, 1024);
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < changes / 2; i++) {
+            int space = i % 100 + 1;
+
+            vendingMachine.addCar(cars[space - 1], 1, space);
+            vendingMachine.sellCar(1, space);
+        }
+
+        long nanos = System.nanoTime() - start;
+        String handledCount = "-";
+        String lostCount = "-";
+
+        if (subscription != null) {
+            while (subscription.getSequence() < bus.getSequence()) {
+                Thread.onSpinWait();
+            }
+
+            subscription.close();
+            handledCount = String.format("%,d", handled[0]);
+            lostCount = String.format("%,d", subscription.getMissedCount());
+        }
+
+        System.out.printf("%-12s %12.1f %,12.0f %12s %12s%n", name, (double) nanos / changes, changes * 1e9 / nanos,
+            handledCount, lostCount);
+    }
+
+    // This method prints how many bytes publishing allocates, measured on the publishing thread.
+    private static void printAllocation(InventoryEventBus bus, int changes) {
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Car car = new BasicCar(2020, 25_000, "Toyota", "Camry");
+        long id = Thread.currentThread().getId();
+
+        for (int i = 0; i < changes; i++) {
+            bus.publish(InventoryEventBus.EventType.ADD, 1, i % 100 + 1, car);
+        }
+
+        long before = threads.getThreadAllocatedBytes(id);
+
+        for (int i = 0; i < changes; i++) {
+            bus.publish(InventoryEventBus.EventType.ADD, 1, i % 100 + 1, car);
+        }
+
+        long bytes = threads.getThreadAllocatedBytes(id) - before;
+        System.out.printf("Allocated %.3f bytes per publish%n", (double) bytes / changes);
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// This class writes listings of cars through one reusable character buffer. Numbers and prices are
+// formatted digit by digit straight into the buffer, so printing a car creates no temporary strings,
+// and the buffer goes to the writer in large blocks instead of one console call per line.
+public class InventoryRenderer {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_LINE = 256;
+
+    private Writer out;
+    private char[] buffer;
+    private int length;
+
+    // The constructor takes the writer that receives the listing.
+    public InventoryRenderer(Writer out) {
+        this.out = out;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    // This constructor writes to a stream such as System.out.
+    public InventoryRenderer(OutputStream out) {
+        this(out, BUFFER_SIZE);
+    }
+
+    // This constructor also takes the size of the buffer in characters, for listings known to be short.
+    // The buffer still grows if one line does not fit.
+    public InventoryRenderer(OutputStream out, int bufferSize) {
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        this.buffer = new char[Math.max(1, bufferSize)];
+    }
+
+    // This method writes a car and its position in the same form as toString() followed by the position, e.g.
+    // "Basic Car: 2017Toyota Prius  - $28000.00 (1, 2)".
+    public InventoryRenderer writeCar(Car car) {
+        return writeCar(car, car.getFloor(), car.getSpace());
+    }
+
+    // This method writes a car with a position other than its own, such as its floor across several
+    // vending machines.
+    public InventoryRenderer writeCar(Car car, int floor, int space) {
+
+        ensureRoom(MAX_LINE + car.getMake().length() + car.getModel().length());
+
+        appendCar(car);
+        append(" (");
+        append(floor);
+        append(", ");
+        append(space);
+        append(')');
+        append('\n');
+        return this;
+    }
+
+    // This method writes a car after a label, without its position, e.g. "Washing: Basic Car: 2017Toyota
+    // Prius  - $28000.00".
+    public InventoryRenderer writeCar(String label, Car car) {
+
+        ensureRoom(MAX_LINE + label.length() + car.getMake().length() + car.getModel().length());
+
+        append(label);
+        appendCar(car);
+        append('\n');
+        return this;
+    }
+
+    // This method writes a car as a JSON object, e.g. {"type":"B","floor":1,"space":2,"year":2017,
+    // "make":"Toyota","model":"Prius","price":28000.00}.
+    public InventoryRenderer writeJson(Car car, int floor, int space) {
+
+        ensureRoom(MAX_LINE + 6 * (car.getMake().length() + car.getModel().length()));
+
+        append("{\"type\":\"");
+        append(car.getType());
+        append("\",\"floor\":");
+        append(floor);
+        append(",\"space\":");
+        append(space);
+        append(",\"year\":");
+        append(car.getYear());
+        append(",\"make\":");
+        appendJsonString(car.getMake());
+        append(",\"model\":");
+        appendJsonString(car.getModel());
+        append(",\"price\":");
+        appendDecimal(car.getPriceCents());
+        append('}');
+        return this;
+    }
+
+    public InventoryRenderer writeJson(Car car) {
+        return writeJson(car, car.getFloor(), car.getSpace());
+    }
+
+    // This method writes text as it is, without a line break.
+    public InventoryRenderer write(String text) {
+
+        ensureRoom(text.length());
+        append(text);
+        return this;
+    }
+
+    // This method writes a line of text.
+    public InventoryRenderer writeLine(String text) {
+
+        ensureRoom(text.length() + 1);
+        append(text);
+        append('\n');
+        return this;
+    }
+
+    // This method sends everything buffered so far to the writer.
+    public void flush() {
+
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+            length = 0;
+        }
+
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // This method appends a car in the same form as toString(), e.g. "Basic Car: 2017Toyota Prius  - $28000.00".
+    private void appendCar(Car car) {
+        append(car.getType() == 'P' ? "Premium Car: " : "Basic Car: ");
+        append(car.getYear());
+        append(car.getMake());
+        append(' ');
+        append(car.getModel());
+        append("  - ");
+        appendPrice(car.getPriceCents());
+    }
+
+    // This method appends a price in cents as dollars with two decimals, e.g. $28000.50.
+    private void appendPrice(long cents) {
+        append('$');
+        appendDecimal(cents);
+    }
+
+    // This method appends an amount in cents as a number with two decimals, e.g. 28000.50.
+    private void appendDecimal(long cents) {
+
+        if (cents < 0) {
+            append('-');
+            cents = -cents;
+        }
+
+        append(cents / 100);
+        append('.');
+        append((char) ('0' + cents % 100 / 10));
+        append((char) ('0' + cents % 10));
+    }
+
+    // This method appends the decimal digits of a number without creating a string.
+    private void append(long value) {
+
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+
+        int digits = 1;
+
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        length += digits;
+    }
+
+    // This method appends a quoted JSON string, escaping quotes, backslashes and control characters.
+    // Room for six characters per character of text must already be ensured.
+    private void appendJsonString(String text) {
+
+        append('"');
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            }
+
+            else if (c < 0x20) {
+                append("\\u00");
+                append(Character.forDigit(c >> 4, 16));
+                append(Character.forDigit(c & 15, 16));
+            }
+
+            else {
+                append(c);
+            }
+        }
+
+        append('"');
+    }
+
+    private void append(String text) {
+        text.getChars(0, text.length(), buffer, length);
+        length += text.length();
+    }
+
+    private void append(char c) {
+        buffer[length++] = c;
+    }
+
+    // This method flushes the buffer if the next line might not fit, and grows it for very long lines.
+    private void ensureRoom(int needed) {
+
+        if (length + needed > buffer.length) {
+            flush();
+        }
+
+        if (needed > buffer.length) {
+            buffer = new char[needed];
+        }
+    }
+}
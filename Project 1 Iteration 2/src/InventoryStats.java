@@ -0,0 +1,190 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class keeps running totals for a vending machine's inventory: the number of cars and their value
+// overall, per make and per tier, and the revenue from sales. The vending machine updates it as cars are
+// added and sold, so reading a count or total never walks the inventory. All money is in whole cents.
+//
+// Updates take no lock, so threads changing different floors never wait for each other here. Counts and
+// totals are LongAdders, and each group counts its cars per price in a concurrent skip list, so the price
+// range is read from the ends of the list.
+public class InventoryStats {
+
+    private GroupStats all;
+    private GroupStats basic;
+    private GroupStats premium;
+    private Map<Integer, GroupStats> byMake;
+    private LongAdder revenueCents;
+    private LongAdder soldCount;
+
+    public InventoryStats() {
+        all = new GroupStats();
+        basic = new GroupStats();
+        premium = new GroupStats();
+        byMake = new ConcurrentHashMap<>();
+        revenueCents = new LongAdder();
+        soldCount = new LongAdder();
+    }
+
+    // This method counts a car that has entered the inventory.
+    void add(Car car) {
+
+        long cents = car.getPriceCents();
+
+        all.add(cents);
+        getTierStats(car.getType()).add(cents);
+
+        GroupStats makeStats = byMake.get(car.getMakeId());
+
+        if (makeStats == null) {
+            makeStats = byMake.computeIfAbsent(car.getMakeId(), makeId -> new GroupStats());
+        }
+
+        makeStats.add(cents);
+    }
+
+    // This method stops counting a car that has left the inventory.
+    void remove(Car car) {
+
+        long cents = car.getPriceCents();
+
+        all.remove(cents);
+        getTierStats(car.getType()).remove(cents);
+        byMake.get(car.getMakeId()).remove(cents);
+    }
+
+    // This method records the sale of a car. The car must also be removed.
+    void recordSale(Car car) {
+        revenueCents.add(car.getPriceCents());
+        soldCount.increment();
+    }
+
+    // This method sets the sales figures, for restoring saved state.
+    void restoreSales(long revenueCents, long soldCount) {
+        this.revenueCents.reset();
+        this.revenueCents.add(revenueCents);
+        this.soldCount.reset();
+        this.soldCount.add(soldCount);
+    }
+
+    public long getCarCount() {
+        return all.getCount();
+    }
+
+    public long getTotalValueCents() {
+        return all.getTotalCents();
+    }
+
+    public long getRevenueCents() {
+        return revenueCents.sum();
+    }
+
+    public long getSoldCount() {
+        return soldCount.sum();
+    }
+
+    // This method returns the totals for every car in the inventory.
+    public GroupStats getOverallStats() {
+        return all;
+    }
+
+    // This method returns the totals for basic ('B') or premium ('P') cars.
+    public GroupStats getTierStats(char type) {
+        return type == 'P' ? premium : basic;
+    }
+
+    // This method returns the totals for one make. A make that has never been stocked has empty totals.
+    public GroupStats getMakeStats(String make) {
+
+        int makeId = Car.MAKES.find(make);
+        GroupStats stats = makeId < 0 ? null : byMake.get(makeId);
+
+        return stats == null ? new GroupStats() : stats;
+    }
+
+    // This method prints the overall, tier and make totals and the revenue. Makes are listed by name.
+    public void print() {
+
+        Map<String, GroupStats> makes = new TreeMap<>();
+
+        System.out.println("Inventory: " + all);
+        System.out.println("  Basic:   " + basic);
+        System.out.println("  Premium: " + premium);
+
+        for (Map.Entry<Integer, GroupStats> entry : byMake.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                makes.put(Car.MAKES.get(entry.getKey()), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, GroupStats> entry : makes.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+
+        System.out.println("Sold: " + getSoldCount() + " cars, revenue " + formatCents(getRevenueCents()));
+    }
+
+    // This method formats cents as dollars, e.g. 2800050 as $28000.50.
+    static String formatCents(long cents) {
+        return String.format("$%d.%02d", cents / 100, cents % 100);
+    }
+
+    // This class holds the count, total, average and price range of a group of cars. The count and total
+    // are LongAdders. The number of cars at each price is kept in a skip list whose entries are updated
+    // atomically, and an entry is dropped when its last car goes, so the cheapest and dearest prices are
+    // its first and last keys. No update takes a lock or walks the group.
+    public static class GroupStats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalCents = new LongAdder();
+        private final ConcurrentSkipListMap<Long, Long> carsByPrice = new ConcurrentSkipListMap<>();
+
+        void add(long cents) {
+            count.increment();
+            totalCents.add(cents);
+            carsByPrice.merge(cents, 1L, Long::sum);
+        }
+
+        void remove(long cents) {
+            count.decrement();
+            totalCents.add(-cents);
+            carsByPrice.computeIfPresent(cents, (price, cars) -> cars == 1 ? null : cars - 1);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalCents() {
+            return totalCents.sum();
+        }
+
+        // This method returns the average price in cents, or 0 for an empty group.
+        public long getAverageCents() {
+            long n = getCount();
+            return n <= 0 ? 0 : Math.round((double) getTotalCents() / n);
+        }
+
+        // This method returns the lowest price in cents, or 0 for an empty group.
+        public long getMinCents() {
+            Map.Entry<Long, Long> lowest = carsByPrice.firstEntry();
+            return lowest == null ? 0 : lowest.getKey();
+        }
+
+        // This method returns the highest price in cents, or 0 for an empty group.
+        public long getMaxCents() {
+            Map.Entry<Long, Long> highest = carsByPrice.lastEntry();
+            return highest == null ? 0 : highest.getKey();
+        }
+
+        @Override
+        public String toString() {
+            return getCount() + " cars, value " + formatCents(getTotalCents()) + ", average "
+                + formatCents(getAverageCents()) + ", range " + formatCents(getMinCents()) + " - "
+                + formatCents(getMaxCents());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class records durations in nanoseconds into log-linear buckets, in the style of an HDR histogram.
+// Each power of two is split into 16 buckets, so a percentile is accurate to about 6%. Recording is a
+// few atomic increments and never locks, so many threads can record at once.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // This method records one duration. Negative durations are recorded as zero.
+    public void record(long nanos) {
+
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // This method returns the mean duration, or 0 if nothing has been recorded.
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    // This method returns the duration below which the given percentage (0 to 100) of recordings fall.
+    // The value is the upper edge of the bucket that holds that percentile, capped at the maximum.
+    public long getPercentile(double percentile) {
+
+        long n = count.sum();
+
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    // This method clears every recording.
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    // This method returns a one-line summary of the recordings in microseconds.
+    public String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+            getCount(), getMean() / 1e3, getPercentile(50) / 1e3, getPercentile(90) / 1e3,
+            getPercentile(99) / 1e3, getPercentile(99.9) / 1e3, getMax() / 1e3);
+    }
+
+    // This method returns the bucket for a duration. Values below 16 get a bucket each; larger values are
+    // grouped by their highest set bit and the 4 bits below it.
+    private static int bucket(long value) {
+
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // This method returns the largest duration that falls into a bucket.
+    private static long upperBound(int bucket) {
+
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (1L << exponent) + subBucket * width;
+
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// This class plans the trips of the lift in a vending machine tower. Test drives, sales and car washes
+// each need the lift to fetch a car, so requests are queued here instead of going straight to the
+// vending machine. The scheduler runs on a simulated clock: requests carry their arrival time, the lift
+// moves according to a travel-time model, and each request is applied to the vending machine when the
+// lift reaches its car. The report gives throughput and wait times, so FIFO service can be compared with
+// batched elevator-style service for a peak-hour trace.
+//
+// With Policy.LOOK the lift gathers every request that arrives within a time window into a batch. It
+// then serves the batch in one sweep in its current direction, floor by floor and space by space, and
+// turns around only when no request is left ahead of it. Requests for the same space keep their arrival
+// order, so a wash is never served after the sale of the same car.
+public class LiftScheduler {
+
+    // This enum names what a retrieval is for.
+    public enum Operation {
+        TEST_DRIVE,
+        SELL,
+        WASH
+    }
+
+    // This enum chooses the order in which queued requests are served.
+    public enum Policy {
+
+        // Requests are served one at a time in the order they arrived.
+        FIFO,
+
+        // Requests are batched within a time window and each batch is served in one elevator sweep.
+        LOOK
+    }
+
+    private final VendingMachine vendingMachine;
+    private final TravelTimeModel travelTimeModel;
+    private final Policy policy;
+    private final long windowMillis;
+    private final List<Request> queue = new ArrayList<>();
+
+    // The constructor takes the vending machine the requests are applied to, how long the lift takes to
+    // move, the policy and, for Policy.LOOK, how long a batch stays open after its first request arrives.
+    public LiftScheduler(VendingMachine vendingMachine, TravelTimeModel travelTimeModel, Policy policy,
+            long windowMillis) {
+
+        this.vendingMachine = vendingMachine;
+        this.travelTimeModel = travelTimeModel;
+        this.policy = policy;
+        this.windowMillis = Math.max(0, windowMillis);
+    }
+
+    // This method queues a retrieval that arrives at the given simulated time. Requests must be submitted
+    // in arrival order.
+    public void submit(Operation operation, int floor, int space, long arrivalMillis) {
+
+        if (!queue.isEmpty() && arrivalMillis < queue.get(queue.size() - 1).arrivalMillis) {
+            throw new IllegalArgumentException("Requests must be submitted in arrival order.");
+        }
+
+        queue.add(new Request(operation, floor, space, arrivalMillis, queue.size()));
+    }
+
+    // This method serves every queued request, starting with the lift empty at floor 1, space 1, and
+    // returns how it went. The queue is empty afterwards.
+    public Report run() {
+
+        Report report = new Report(policy, windowMillis);
+        Lift lift = new Lift();
+        int next = 0;
+
+        while (next < queue.size()) {
+
+            if (policy == Policy.FIFO) {
+                Request request = queue.get(next++);
+                lift.clock = Math.max(lift.clock, request.arrivalMillis);
+                serve(request, lift, report);
+                continue;
+            }
+
+            // Nothing is waiting, so the lift idles until the next request and holds the batch open for
+            // the window.
+            if (queue.get(next).arrivalMillis > lift.clock) {
+                lift.clock = queue.get(next).arrivalMillis + windowMillis;
+            }
+
+            List<Request> batch = new ArrayList<>();
+
+            while (next < queue.size() && queue.get(next).arrivalMillis <= lift.clock) {
+                batch.add(queue.get(next++));
+            }
+
+            report.batches++;
+
+            for (Request request : sweep(batch, lift)) {
+                serve(request, lift, report);
+            }
+        }
+
+        queue.clear();
+        return report;
+    }
+
+    // This method orders a batch as one LOOK sweep: first the requests at or ahead of the lift in its
+    // direction of travel, nearest first, then the rest on the way back.
+    private List<Request> sweep(List<Request> batch, Lift lift) {
+
+        Comparator<Request> upward = Comparator.comparingInt((Request request) -> request.floor)
+            .thenComparingInt(request -> request.space);
+        List<Request> ahead = new ArrayList<>();
+        List<Request> behind = new ArrayList<>();
+
+        for (Request request : batch) {
+            int compared = upward.compare(request, lift.at());
+            boolean isAhead = lift.goingUp ? compared >= 0 : compared <= 0;
+            (isAhead ? ahead : behind).add(request);
+        }
+
+        if (ahead.isEmpty()) {
+            lift.goingUp = !lift.goingUp;
+            ahead = behind;
+            behind = new ArrayList<>();
+        }
+
+        Comparator<Request> forward = lift.goingUp ? upward : upward.reversed();
+        ahead.sort(forward.thenComparingInt(request -> request.order));
+        behind.sort(forward.reversed().thenComparingInt(request -> request.order));
+
+        List<Request> ordered = new ArrayList<>(ahead);
+        ordered.addAll(behind);
+        return ordered;
+    }
+
+    // This method moves the lift to a request's car, applies the request and records its wait.
+    private void serve(Request request, Lift lift, Report report) {
+
+        long travel = travelTimeModel.travelMillis(lift.floor, lift.space, request.floor, request.space);
+
+        if (request.floor != lift.floor) {
+            lift.goingUp = request.floor > lift.floor;
+        }
+
+        lift.clock += travel + travelTimeModel.getHandlingMillis();
+        lift.floor = request.floor;
+        lift.space = request.space;
+
+        if (request.operation == Operation.TEST_DRIVE) {
+            vendingMachine.testDrive(request.floor, request.space);
+        }
+
+        else if (request.operation == Operation.SELL) {
+            vendingMachine.sellCar(request.floor, request.space);
+        }
+
+        else {
+            vendingMachine.addCarToWash(request.floor, request.space);
+        }
+
+        report.record(request.arrivalMillis, lift.clock, travel);
+    }
+
+    // This class is how long the lift takes to move between two spaces and to hand over a car. Vertical and
+    // horizontal movement happen at the same time, so a trip takes as long as the slower of the two.
+    public static class TravelTimeModel {
+
+        private final long floorMillis;
+        private final long spaceMillis;
+        private final long handlingMillis;
+
+        // The constructor takes the time to climb one floor, to move along one space, and to load or
+        // unload a car.
+        public TravelTimeModel(long floorMillis, long spaceMillis, long handlingMillis) {
+            this.floorMillis = floorMillis;
+            this.spaceMillis = spaceMillis;
+            this.handlingMillis = handlingMillis;
+        }
+
+        // This method returns how long the lift takes to move from one space to another.
+        public long travelMillis(int fromFloor, int fromSpace, int toFloor, int toSpace) {
+            return Math.max(Math.abs(toFloor - fromFloor) * floorMillis, Math.abs(toSpace - fromSpace) * spaceMillis);
+        }
+
+        public long getHandlingMillis() {
+            return handlingMillis;
+        }
+    }
+
+    // This class holds the results of one run. Times are simulated.
+    public static class Report {
+
+        private final Policy policy;
+        private final long windowMillis;
+        private final LatencyHistogram waits = new LatencyHistogram();
+        private long firstArrival = -1;
+        private long lastCompletion;
+        private long travelMillis;
+        private int batches;
+
+        Report(Policy policy, long windowMillis) {
+            this.policy = policy;
+            this.windowMillis = windowMillis;
+        }
+
+        // This method records a served request. The wait runs from its arrival until its car is delivered.
+        void record(long arrivalMillis, long completionMillis, long travel) {
+
+            if (firstArrival < 0) {
+                firstArrival = arrivalMillis;
+            }
+
+            lastCompletion = Math.max(lastCompletion, completionMillis);
+            travelMillis += travel;
+            waits.record((completionMillis - arrivalMillis) * 1_000_000);
+        }
+
+        public long getServedCount() {
+            return waits.getCount();
+        }
+
+        // This method returns the requests served per hour, from the first arrival to the last delivery.
+        public double getThroughputPerHour() {
+            return getServedCount() * 3_600_000.0 / Math.max(1, lastCompletion - firstArrival);
+        }
+
+        // This method returns the waits in nanoseconds of simulated time.
+        public LatencyHistogram getWaits() {
+            return waits;
+        }
+
+        public long getTravelMillis() {
+            return travelMillis;
+        }
+
+        @Override
+        public String toString() {
+
+            String name = policy == Policy.LOOK ? "LOOK " + windowMillis / 1000 + "s" : "FIFO";
+
+            return String.format("%-10s %6d served %8.1f/h  wait mean %7.1fs p50 %7.1fs p99 %7.1fs  travel %7.1f min%s",
+                name, getServedCount(), getThroughputPerHour(), waits.getMean() / 1e9, waits.getPercentile(50) / 1e9,
+                waits.getPercentile(99) / 1e9, travelMillis / 60_000.0,
+                policy == Policy.LOOK ? String.format("  %d batches", batches) : "");
+        }
+    }
+
+    // This class is a queued retrieval. order is its place in the arrival order.
+    private static class Request {
+
+        final Operation operation;
+        final int floor;
+        final int space;
+        final long arrivalMillis;
+        final int order;
+
+        Request(Operation operation, int floor, int space, long arrivalMillis, int order) {
+            this.operation = operation;
+            this.floor = floor;
+            this.space = space;
+            this.arrivalMillis = arrivalMillis;
+            this.order = order;
+        }
+    }
+
+    // This class is where the lift is, which way it last moved, and the simulated time.
+    private static class Lift {
+
+        int floor = 1;
+        int space = 1;
+        boolean goingUp = true;
+        long clock;
+
+        Request at() {
+            return new Request(null, floor, space, clock, -1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+// This program compares FIFO lift service with batched LOOK service on a simulated peak hour. Requests
+// arrive at random at the given rate for one hour, each for a random car of a full tower. Arguments are
+// the floors, the spaces per floor and the requests per hour, e.g.
+// java LiftSchedulerBenchmark 20 40 120
+public class LiftSchedulerBenchmark {
+
+    private static final long[] WINDOWS_MILLIS = { 0, 30_000, 60_000, 120_000 };
+
+    public static void main(String[] args) {
+
+        int floors = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int spaces = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int perHour = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+        LiftScheduler.TravelTimeModel model = new LiftScheduler.TravelTimeModel(2_000, 1_000, 10_000);
+
+        System.out.printf("Tower %dx%d, %d requests/hour, %.0fs per floor, %.0fs per space, %.0fs handling%n",
+            floors, spaces, perHour, 2.0, 1.0, 10.0);
+
+        System.out.println(run(floors, spaces, perHour, model, LiftScheduler.Policy.FIFO, 0));
+
+        for (long window : WINDOWS_MILLIS) {
+            System.out.println(run(floors, spaces, perHour, model, LiftScheduler.Policy.LOOK, window));
+        }
+    }
+
+    // This method replays the same peak hour against a freshly filled tower with one policy.
+    private static LiftScheduler.Report run(int floors, int spaces, int perHour, LiftScheduler.TravelTimeModel model,
+            LiftScheduler.Policy policy, long windowMillis) {
+
+        VendingMachine vendingMachine = new VendingMachine(floors, spaces);
+
+        for (int i = 0; i < floors * spaces; i++) {
+            vendingMachine.addCar(new BasicCar(2020, 25_000, "Toyota", "Camry"));
+        }
+
+        LiftScheduler scheduler = new LiftScheduler(vendingMachine, model, policy, windowMillis);
+        Random random = new Random(42);
+        double clock = 0;
+
+        while (clock < 3_600_000) {
+            clock += -Math.log(1 - random.nextDouble()) * 3_600_000 / perHour;
+            int pick = random.nextInt(100);
+            LiftScheduler.Operation operation = pick < 60 ? LiftScheduler.Operation.TEST_DRIVE
+                : pick < 85 ? LiftScheduler.Operation.SELL : LiftScheduler.Operation.WASH;
+
+            scheduler.submit(operation, random.nextInt(floors) + 1, random.nextInt(spaces) + 1, (long) clock);
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            return scheduler.run();
+        }
+
+        finally {
+            System.setOut(console);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// This class splits a stream or a byte buffer into lines without decoding them. Bytes are read into one
+// reusable buffer, and each call to nextLine() marks where the next line starts and ends in it, so callers
+// such as CarDataParser and CommandTokenizer scan and parse the line in place. A trailing '\r' is dropped
+// from each line, and the last line need not end with '\n'.
+public class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private InputStream in;
+    private ByteBuffer source;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private boolean endOfInput;
+
+    private int lineStart;
+    private int lineEnd;
+
+    // The constructor takes the stream to read from. The stream is closed when the reader is closed.
+    public LineReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    // This constructor reads the remaining bytes of a buffer, such as a memory-mapped region of a file.
+    public LineReader(ByteBuffer source) {
+        this.source = source;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    // This method finds the next line, reading more input if needed. It returns false when there are no
+    // more lines.
+    public boolean nextLine() throws IOException {
+
+        int scan = pos;
+
+        while (true) {
+
+            while (scan < limit) {
+                if (buffer[scan] == '\n') {
+                    setLine(pos, scan);
+                    pos = scan + 1;
+                    return true;
+                }
+
+                scan++;
+            }
+
+            if (endOfInput) {
+                if (pos == limit) {
+                    return false;
+                }
+
+                setLine(pos, limit);
+                pos = limit;
+                return true;
+            }
+
+            scan -= pos;
+            fill();
+        }
+    }
+
+    // This method returns the buffer that holds the current line. The buffer is replaced when a line does
+    // not fit, so it must be fetched again after every call to nextLine().
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    // This method returns the index in the buffer of the first byte of the current line.
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    // This method returns the index in the buffer just past the current line.
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    // This method marks the bytes from start to end as the current line, dropping a trailing '\r'.
+    private void setLine(int start, int end) {
+
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+
+        lineStart = start;
+        lineEnd = end;
+    }
+
+    // This method moves any unread bytes to the front of the buffer and reads more input after them.
+    // The buffer doubles if a single line does not fit.
+    private void fill() throws IOException {
+
+        int remaining = limit - pos;
+
+        if (remaining == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, pos, larger, 0, remaining);
+            buffer = larger;
+        }
+
+        else {
+            System.arraycopy(buffer, pos, buffer, 0, remaining);
+        }
+
+        pos = 0;
+        limit = remaining;
+
+        int read = read(buffer, limit, buffer.length - limit);
+
+        if (read < 0) {
+            endOfInput = true;
+        }
+
+        else {
+            limit += read;
+        }
+    }
+
+    // This method reads up to length bytes from the stream or buffer. It returns -1 at the end of input.
+    private int read(byte[] bytes, int offset, int length) throws IOException {
+
+        if (in != null) {
+            return in.read(bytes, offset, length);
+        }
+
+        if (!source.hasRemaining()) {
+            return -1;
+        }
+
+        length = Math.min(length, source.remaining());
+        source.get(bytes, offset, length);
+        return length;
+    }
+}
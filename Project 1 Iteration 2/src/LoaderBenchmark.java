@@ -0,0 +1,98 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Scanner;
+
+// This program measures how fast car data files can be parsed with java.util.Scanner and with
+// CarDataParser. It writes a generated feed to a temporary file, e.g.
+// java LoaderBenchmark 2000000
+public class LoaderBenchmark {
+
+    private static final String[] MAKES = { "Toyota", "Honda", "Ford", "Chevrolet", "Tesla", "BMW" };
+    private static final String[] MODELS = { "Prius", "Camry", "Accord", "F150", "Traverse", "Model3" };
+
+    public static void main(String[] args) throws IOException {
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        File file = File.createTempFile("cars", ".txt");
+        file.deleteOnExit();
+
+        writeFeed(file, rows);
+        System.out.printf("Feed: %,d rows, %,d bytes%n", rows, file.length());
+
+        for (int round = 1; round <= 3; round++) {
+            report("Scanner", file.length(), rows, timeScanner(file));
+            report("CarDataParser", file.length(), rows, timeParser(file));
+        }
+    }
+
+    // This method writes a feed with one car per slot of a 1000-space-wide lot.
+    static void writeFeed(File file, int rows) throws IOException {
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+
+            for (int i = 0; i < rows; i++) {
+                writer.write((i % 3 == 0 ? "P " : "B ") + (i / 1000 + 1) + " " + (i % 1000 + 1) + " "
+                    + (1990 + i % 35) + " " + (5000 + i % 90000) + ".00 " + MAKES[i % MAKES.length] + " "
+                    + MODELS[i % MODELS.length]);
+                writer.newLine();
+            }
+        }
+    }
+
+    // This method parses the feed with Scanner the way loadCarData used to and returns the elapsed nanoseconds.
+    private static long timeScanner(File file) throws IOException {
+
+        long start = System.nanoTime();
+        long checksum = 0;
+
+        try (Scanner scanner = new Scanner(file)) {
+
+            while (scanner.hasNext()) {
+                scanner.next();
+                checksum += scanner.nextInt() + scanner.nextInt() + scanner.nextInt();
+                checksum += (long) scanner.nextDouble();
+                checksum += scanner.next().length() + scanner.next().length();
+            }
+        }
+
+        return blackhole(checksum, System.nanoTime() - start);
+    }
+
+    // This method parses the feed with CarDataParser and returns the elapsed nanoseconds.
+    private static long timeParser(File file) throws IOException {
+
+        long start = System.nanoTime();
+        long checksum = 0;
+
+        try (CarDataParser parser = new CarDataParser(new FileInputStream(file))) {
+
+            while (parser.nextLine()) {
+                checksum += parser.getFloor() + parser.getSpace() + parser.getYear();
+                checksum += parser.getPriceCents() / 100;
+                checksum += parser.getMake().length() + parser.getModel().length();
+            }
+        }
+
+        return blackhole(checksum, System.nanoTime() - start);
+    }
+
+    // This method prints MB/s and rows/s for one timed run.
+    private static void report(String name, long bytes, int rows, long nanos) {
+
+        double seconds = nanos / 1e9;
+        System.out.printf("%-14s %8.1f MB/s %,14.0f rows/s%n", name, bytes / 1e6 / seconds, rows / seconds);
+    }
+
+    // This method keeps the checksum alive so the JIT cannot drop the parsing work.
+    private static long blackhole(long checksum, long nanos) {
+
+        if (checksum == 42) {
+            System.out.println();
+        }
+
+        return nanos;
+    }
+}
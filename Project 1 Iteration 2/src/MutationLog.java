@@ -0,0 +1,682 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// This class is an append-only write-ahead log of the changes made to a vending machine: cars added, cars
+// sold, cars queued for a wash and the wash queue being processed. Attach it with
+// VendingMachine.setMutationLog and every change is recorded before the call returns. After a crash,
+// recover() restores the last snapshot and replays the records written since.
+//
+// Each record takes its sequence number under the lock that makes its change visible: a floor lock for
+// cars added and sold, every floor lock for bulk changes and processing the wash queue, and the wash
+// queue itself for cars queued. So records for the same floor, and records for the wash queue, are in
+// the order the changes were made. Changes to different floors made at the same time may be logged in
+// either order, which replays to the same state since they touch different spaces.
+//
+// A change only encodes its record into a buffer under a short lock. Records reach the file in batches:
+// whichever thread gets to the file first writes every record buffered so far, and the threads behind it
+// find their records already written. With SyncPolicy.ALWAYS that batch also shares one fsync, so many
+// concurrent sales pay for a single disk sync (group commit). The other policies sync in the background
+// or not at all, and a change then costs about a microsecond.
+//
+// Layout (big-endian): int magic, int version, long baseSequence, then records of
+//   int length, int crc32, long sequence, byte op, op fields
+// where length and the checksum cover everything after the checksum. Make and model names are logged
+// once per log as MAKE and MODEL records, and car records refer to them by id. A crash in the middle of
+// a write leaves a record that is cut short or fails its checksum, so reading stops there.
+public class MutationLog implements Closeable {
+
+    // This enum says when written records are forced to disk.
+    public enum SyncPolicy {
+
+        // Every change waits until its record is synced. Changes made at the same time share one fsync.
+        ALWAYS,
+
+        // A background thread syncs the log at a fixed interval, so a crash loses at most one interval.
+        INTERVAL,
+
+        // Records are handed to the operating system in batches but never synced. A crash of the program
+        // loses only the buffered records; a power failure may lose more.
+        NEVER
+    }
+
+    private static final int MAGIC = 0x43564D4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    private static final int WRITE_THRESHOLD = 1 << 16;
+
+    private static final byte ADD = 'A';
+    private static final byte SELL = 'S';
+    private static final byte WASH = 'W';
+    private static final byte PROCESS_WASH = 'C';
+    private static final byte MAKE = 'M';
+    private static final byte MODEL = 'N';
+
+    private final Path file;
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final LongAdder syncs = new LongAdder();
+
+    // These fields are guarded by the log's monitor.
+    private final CRC32 crc = new CRC32();
+    private final BitSet loggedMakes = new BitSet();
+    private final BitSet loggedModels = new BitSet();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_THRESHOLD * 2);
+    private long lastSequence;
+    private long recordCount;
+
+    // These fields are guarded by writeLock.
+    private ByteBuffer spare = ByteBuffer.allocateDirect(WRITE_THRESHOLD * 2);
+    private volatile long writtenSequence;
+    private volatile long syncedSequence;
+
+    private Thread syncThread;
+    private volatile boolean closed;
+
+    // The first write or sync that failed. Once set, the log refuses every further change.
+    private volatile IOException failure;
+
+    // The constructor opens the log, creating it if needed. An existing log is checked record by record,
+    // and anything after the last complete record is cut off so new records follow on cleanly.
+    private MutationLog(Path file, SyncPolicy policy) throws IOException {
+
+        this.file = file;
+        this.policy = policy;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            writeHeader(0);
+        }
+
+        else {
+            lastSequence = readBaseSequence();
+            long end = scan((record, length) ->
+                lastSequence = Math.max(lastSequence, record.getLong(record.position())));
+
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+
+        channel.position(channel.size());
+        writtenSequence = lastSequence;
+        syncedSequence = lastSequence;
+    }
+
+    // This method opens a log that syncs every change, sharing syncs between concurrent changes.
+    public static MutationLog open(Path file) throws IOException {
+        return open(file, SyncPolicy.ALWAYS, 0);
+    }
+
+    // This method opens a log with a sync policy. intervalMillis is how often SyncPolicy.INTERVAL syncs
+    // and is ignored by the other policies.
+    public static MutationLog open(Path file, SyncPolicy policy, long intervalMillis) throws IOException {
+
+        MutationLog log = new MutationLog(file, policy);
+
+        if (policy == SyncPolicy.INTERVAL) {
+            log.startSyncThread(Math.max(1, intervalMillis));
+        }
+
+        return log;
+    }
+
+    // This method rebuilds a vending machine after a restart. It restores the snapshot if the file exists,
+    // or starts an empty vending machine of the given size if it doesn't, replays the log records written
+    // after the snapshot, and attaches the log so that new changes are recorded.
+    public static VendingMachine recover(Path snapshot, MutationLog log, int floors, int spaces, boolean concurrent)
+            throws IOException {
+
+        VendingMachine vendingMachine;
+        long snapshotSequence = 0;
+
+        if (Files.exists(snapshot)) {
+            vendingMachine = VendingMachineSnapshot.read(snapshot, concurrent);
+            snapshotSequence = VendingMachineSnapshot.readLogSequence(snapshot);
+        }
+
+        else {
+            vendingMachine = new VendingMachine(floors, spaces, concurrent);
+        }
+
+        log.replay(vendingMachine, snapshotSequence);
+        vendingMachine.setMutationLog(log);
+        return vendingMachine;
+    }
+
+    // This method applies every record after afterSequence to a vending machine and returns the number of
+    // changes applied. The vending machine must not have a log attached while it is replayed into.
+    public int replay(VendingMachine vendingMachine, long afterSequence) throws IOException {
+
+        if (vendingMachine.getMutationLog() != null) {
+            throw new IllegalStateException("Detach the mutation log before replaying into the vending machine.");
+        }
+
+        Replayer replayer = new Replayer(vendingMachine, afterSequence);
+
+        writeLock.lock();
+
+        try {
+            flush(lastSequence(), false);
+            scan(replayer);
+        }
+
+        finally {
+            writeLock.unlock();
+        }
+
+        synchronized (this) {
+            lastSequence = Math.max(lastSequence, afterSequence);
+        }
+
+        return replayer.applied;
+    }
+
+    // This method saves a snapshot of the vending machine and empties the log, since the snapshot now holds
+    // every change in it. No change can be made while the snapshot is written. The snapshot remembers the
+    // last record it holds, so a crash before the log is emptied only makes recovery skip those records.
+    public void checkpoint(VendingMachine vendingMachine, Path snapshot) throws IOException {
+
+        if (failure != null) {
+            throw new IOException("The mutation log failed earlier", failure);
+        }
+
+        vendingMachine.lockAllFloors();
+        writeLock.lock();
+
+        try {
+            synchronized (this) {
+                long sequence = lastSequence;
+
+                VendingMachineSnapshot.write(vendingMachine, snapshot, sequence);
+                writeHeader(sequence);
+                channel.truncate(HEADER_SIZE);
+                channel.position(HEADER_SIZE);
+                channel.force(true);
+
+                buffer.clear();
+                loggedMakes.clear();
+                loggedModels.clear();
+                writtenSequence = sequence;
+                syncedSequence = sequence;
+            }
+        }
+
+        finally {
+            writeLock.unlock();
+            vendingMachine.unlockAllFloors();
+        }
+    }
+
+    // This method writes and syncs every record logged so far.
+    public void sync() {
+        flush(lastSequence(), true);
+    }
+
+    public SyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // This method returns the sequence number of the last record logged.
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    // This method returns the number of records logged since the log was opened.
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    // This method returns the number of fsyncs made since the log was opened. Under SyncPolicy.ALWAYS,
+    // getRecordCount() / getSyncCount() is how many changes shared each sync on average.
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    // This method stops the background sync thread, syncs every remaining record and closes the file.
+    @Override
+    public void close() throws IOException {
+
+        closed = true;
+
+        if (syncThread != null) {
+            syncThread.interrupt();
+
+            try {
+                syncThread.join();
+            }
+
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            sync();
+        }
+
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        finally {
+            channel.close();
+        }
+    }
+
+    // This method logs a car that was added, after its position has been set, and returns the sequence
+    // number of the record.
+    synchronized long logAdd(Car car) {
+
+        checkFailure();
+
+        defineName(MAKE, loggedMakes, car.getMakeId(), Car.MAKES);
+        defineName(MODEL, loggedModels, car.getModelId(), Car.MODELS);
+
+        int start = beginRecord(ADD, 29);
+        buffer.put((byte) car.getType()).putInt(car.getFloor()).putInt(car.getSpace());
+        buffer.putInt(car.getYear()).putLong(car.getPriceCents());
+        buffer.putInt(car.getMakeId()).putInt(car.getModelId());
+
+        return endRecord(start);
+    }
+
+    // This method logs a car that was sold.
+    synchronized long logSell(int floor, int space) {
+
+        checkFailure();
+
+        int start = beginRecord(SELL, 8);
+        buffer.putInt(floor).putInt(space);
+
+        return endRecord(start);
+    }
+
+    // This method logs a car that was put in the built-in wash queue.
+    synchronized long logWash(int floor, int space) {
+
+        checkFailure();
+
+        int start = beginRecord(WASH, 8);
+        buffer.putInt(floor).putInt(space);
+
+        return endRecord(start);
+    }
+
+    // This method logs that the built-in wash queue was processed and emptied.
+    synchronized long logProcessWash() {
+
+        checkFailure();
+        int start = beginRecord(PROCESS_WASH, 0);
+        return endRecord(start);
+    }
+
+    // This method makes a logged change as durable as the sync policy promises before the change returns.
+    // It is called after the vending machine has released its floor lock, so if it throws, the change has
+    // been applied in memory but is not durable.
+    void commit(long sequence) {
+
+        checkFailure();
+
+        if (policy == SyncPolicy.ALWAYS) {
+            flush(sequence, true);
+        }
+
+        else if (bufferedBytes() >= WRITE_THRESHOLD) {
+            flush(sequence, false);
+        }
+    }
+
+    // This method writes the buffered records if the record with the given sequence number has not been
+    // written yet, and syncs them if asked to. Only one thread writes at a time. Threads that wait for it
+    // usually find their own records written, and synced, by the time they get the lock.
+    //
+    // If the write or sync fails, the log fails for good: the records being written are dropped, since part
+    // of them may already be in the file, and every later change and commit throws. Recovery reads the file
+    // up to the last complete record.
+    private void flush(long sequence, boolean force) {
+
+        checkFailure();
+
+        if ((force ? syncedSequence : writtenSequence) >= sequence) {
+            return;
+        }
+
+        writeLock.lock();
+
+        try {
+            checkFailure();
+
+            if ((force ? syncedSequence : writtenSequence) >= sequence) {
+                return;
+            }
+
+            ByteBuffer records;
+            long last;
+
+            synchronized (this) {
+                records = buffer;
+                buffer = spare;
+                last = lastSequence;
+            }
+
+            // The buffer that was written becomes the spare whether or not the write succeeds, so the two
+            // buffers are never the same one.
+            try {
+                records.flip();
+
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+            }
+
+            finally {
+                records.clear();
+                spare = records;
+            }
+
+            writtenSequence = last;
+
+            if (force) {
+                channel.force(false);
+                syncs.increment();
+                syncedSequence = last;
+            }
+        }
+
+        catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    // This method throws if an earlier write or sync failed. The vending machine calls it before a bulk
+    // change, so a log that has failed stops the change before anything is applied.
+    void checkFailure() {
+
+        IOException cause = failure;
+
+        if (cause != null) {
+            throw new UncheckedIOException("The mutation log failed earlier and accepts no more changes", cause);
+        }
+    }
+
+    // This method starts the daemon thread that syncs the log every interval under SyncPolicy.INTERVAL.
+    private void startSyncThread(long intervalMillis) {
+
+        syncThread = new Thread(() -> {
+
+            while (!closed) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(intervalMillis);
+                    sync();
+                }
+
+                catch (InterruptedException e) {
+                    return;
+                }
+
+                // The failure is kept by the log, so every later change fails too. There is nothing left to sync.
+                catch (UncheckedIOException e) {
+                    System.out.println("Error: Could not sync the mutation log: " + e.getCause().getMessage());
+                    return;
+                }
+            }
+        });
+
+        syncThread.setName("mutation-log-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    private synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    private synchronized int bufferedBytes() {
+        return buffer.position();
+    }
+
+    // This method logs the name behind a make or model id the first time the id is used in this log.
+    private void defineName(byte op, BitSet logged, int id, StringDictionary dictionary) {
+
+        if (logged.get(id)) {
+            return;
+        }
+
+        byte[] name = dictionary.get(id).getBytes(StandardCharsets.UTF_8);
+
+        if (name.length > MAX_RECORD_SIZE - 32) {
+            throw new IllegalArgumentException("Name is too long to log: " + dictionary.get(id));
+        }
+
+        int start = beginRecord(op, 4 + name.length);
+        buffer.putInt(id).put(name);
+        endRecord(start);
+        logged.set(id);
+    }
+
+    // This method starts a record with room for size bytes of fields after the op, growing the buffer if
+    // needed. It returns where the record starts.
+    private int beginRecord(byte op, int size) {
+
+        int needed = RECORD_HEADER_SIZE + 9 + size;
+
+        if (buffer.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.putLong(++lastSequence).put(op);
+
+        return start;
+    }
+
+    // This method fills in the length and checksum of the record that starts at start and returns its
+    // sequence number.
+    private long endRecord(int start) {
+
+        int end = buffer.position();
+        int body = start + RECORD_HEADER_SIZE;
+
+        crc.reset();
+        buffer.position(body).limit(end);
+        crc.update(buffer);
+        buffer.limit(buffer.capacity());
+
+        buffer.putInt(start, end - body).putInt(start + 4, (int) crc.getValue());
+        recordCount++;
+
+        return lastSequence;
+    }
+
+    // This method writes the file header. baseSequence is the sequence number the first record follows.
+    private void writeHeader(long baseSequence) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(baseSequence).flip();
+
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private long readBaseSequence() throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        channel.read(header, 0);
+        header.flip();
+
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a vending machine mutation log: " + file);
+        }
+
+        return header.getLong();
+    }
+
+    // This method reads every complete record in the file, in order, and hands each one to the visitor
+    // positioned at its sequence number, along with its length. It returns the offset just after the last complete record.
+    private long scan(RecordVisitor visitor) throws IOException {
+
+        ByteBuffer in = ByteBuffer.allocate(MAX_RECORD_SIZE * 2);
+        CRC32 check = new CRC32();
+        long offset = HEADER_SIZE;
+        long readPosition = HEADER_SIZE;
+
+        in.limit(0);
+
+        while (true) {
+            int available = in.remaining();
+            int length = available >= 4 ? in.getInt(in.position()) : 0;
+
+            if (available >= 4 && (length < 9 || length > MAX_RECORD_SIZE)) {
+                return offset;
+            }
+
+            if (available < RECORD_HEADER_SIZE + length) {
+                in.compact();
+                int read = channel.read(in, readPosition);
+                in.flip();
+
+                if (read <= 0) {
+                    return offset;
+                }
+
+                readPosition += read;
+                continue;
+            }
+
+            in.getInt();
+            int checksum = in.getInt();
+            int body = in.position();
+
+            check.reset();
+            check.update(in.array(), in.arrayOffset() + body, length);
+
+            if ((int) check.getValue() != checksum) {
+                return offset;
+            }
+
+            visitor.visit(in, length);
+            in.position(body + length);
+            offset += RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    // This interface receives the records read by scan().
+    private interface RecordVisitor {
+        void visit(ByteBuffer record, int length);
+    }
+
+    // This class applies logged changes to a vending machine. Make and model ids in the log are mapped to
+    // the ids of the same names in the live dictionaries.
+    private static class Replayer implements RecordVisitor {
+
+        private final VendingMachine vendingMachine;
+        private final long afterSequence;
+        private int[] makeIds = new int[64];
+        private int[] modelIds = new int[64];
+        private int applied;
+
+        Replayer(VendingMachine vendingMachine, long afterSequence) {
+            this.vendingMachine = vendingMachine;
+            this.afterSequence = afterSequence;
+        }
+
+        @Override
+        public void visit(ByteBuffer record, int length) {
+
+            long sequence = record.getLong();
+            byte op = record.get();
+
+            if (op == MAKE) {
+                makeIds = define(record, length - 13, makeIds, Car.MAKES);
+                return;
+            }
+
+            if (op == MODEL) {
+                modelIds = define(record, length - 13, modelIds, Car.MODELS);
+                return;
+            }
+
+            if (sequence <= afterSequence) {
+                return;
+            }
+
+            if (op == ADD) {
+                byte type = record.get();
+                int floor = record.getInt();
+                int space = record.getInt();
+                int year = record.getInt();
+                double price = record.getLong() / 100.0;
+                int makeId = makeIds[record.getInt()];
+                int modelId = modelIds[record.getInt()];
+                Car car = type == 'P' ? new PremiumCar(year, price, makeId, modelId)
+                    : new BasicCar(year, price, makeId, modelId);
+
+                vendingMachine.addCar(car, floor, space);
+            }
+
+            else if (op == SELL) {
+                vendingMachine.sellCar(record.getInt(), record.getInt());
+            }
+
+            else if (op == WASH) {
+                vendingMachine.addCarToWash(record.getInt(), record.getInt());
+            }
+
+            else if (op == PROCESS_WASH) {
+                vendingMachine.drainWashQueue();
+            }
+
+            applied++;
+        }
+
+        // This method reads the id and name of a MAKE or MODEL record into the id map and returns the map,
+        // grown if needed.
+        private static int[] define(ByteBuffer record, int length, int[] ids, StringDictionary dictionary) {
+
+            int id = record.getInt();
+            byte[] name = new byte[length];
+
+            record.get(name);
+
+            if (id >= ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, id + 1));
+            }
+
+            ids[id] = dictionary.idOf(name, 0, length);
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// This program measures what a write-ahead log costs per sale. Several threads each add and sell cars on
+// their own floors of a concurrent vending machine, first without a log and then with each sync policy.
+// It prints the time per change and, for SyncPolicy.ALWAYS, how many changes shared each fsync. The
+// arguments are the number of threads and the changes per thread, e.g.
+// java MutationLogBenchmark 8 20000
+public class MutationLogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        Path dir = Files.createTempDirectory("mutation-log");
+
+        System.out.printf("%-10s %8s %12s %14s %16s%n", "policy", "threads", "us/change", "changes/s", "changes/fsync");
+
+        for (int round = 1; round <= 2; round++) {
+            run(null, threads, changes, dir);
+
+            for (MutationLog.SyncPolicy policy : MutationLog.SyncPolicy.values()) {
+                run(policy, threads, changes, dir);
+            }
+        }
+    }
+
+    // This method runs one measurement, without a log when policy is null.
+    private static void run(MutationLog.SyncPolicy policy, int threads, int changes, Path dir) throws Exception {
+
+        Path file = dir.resolve("vending-machine.log");
+        Files.deleteIfExists(file);
+
+        VendingMachine vendingMachine = new VendingMachine(threads, 100, true);
+        MutationLog log = policy == null ? null : MutationLog.open(file, policy, 10);
+        Thread[] workers = new Thread[threads];
+
+        vendingMachine.setMutationLog(log);
+
+        for (int t = 0; t < threads; t++) {
+            int floor = t + 1;
+
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < changes / 2; i++) {
+                    int space = i % 100 + 1;
+
+                    vendingMachine.addCar(new BasicCar(2000 + i % 25, 10_000 + i % 5000, "Toyota", "Camry"), floor, space);
+                    vendingMachine.sellCar(floor, space);
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long nanos = System.nanoTime() - start;
+        long total = (long) threads * (changes / 2) * 2;
+        String perSync = "-";
+
+        if (log != null) {
+            log.close();
+
+            if (policy == MutationLog.SyncPolicy.ALWAYS) {
+                perSync = String.format("%.1f", log.getRecordCount() / (double) Math.max(1, log.getSyncCount()));
+            }
+        }
+
+        System.out.printf("%-10s %8d %12.2f %,14.0f %16s%n", policy == null ? "none" : policy, threads,
+            nanos / 1e3 / total, total * 1e9 / nanos, perSync);
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// This class loads a large car data file on several threads. The file is split into chunks at line
+// boundaries, each chunk is memory-mapped and parsed on a fork-join pool, and the parsed cars are then
+// added to the vending machine chunk by chunk in file order while later chunks are still being parsed.
+// Because the cars reach addCar in the same order as a sequential load, an earlier line always wins a
+// contested slot, exactly as it would with Application.loadCarData.
+public class ParallelCarDataLoader {
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 28;
+
+    private final ForkJoinPool pool;
+
+    // The constructor takes the pool that parses the chunks.
+    public ParallelCarDataLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ParallelCarDataLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // This method loads every car in the file into the vending machine and returns the number of lines
+    // that were parsed successfully. Malformed lines are printed with their line number in the file.
+    public int load(VendingMachine vendingMachine, Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            List<ChunkTask> tasks = new ArrayList<>();
+            long[] bounds = split(channel, pool.getParallelism());
+
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                ChunkTask task = new ChunkTask(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]));
+                pool.execute(task);
+                tasks.add(task);
+            }
+
+            int parsed = 0;
+            int firstLine = 0;
+
+            for (ChunkTask task : tasks) {
+                Chunk chunk = join(task);
+                chunk.addTo(vendingMachine, firstLine);
+                parsed += chunk.size;
+                firstLine += chunk.lines;
+            }
+
+            return parsed;
+        }
+    }
+
+    // This method waits for a chunk to be parsed, rethrowing any read error as an IOException.
+    private static Chunk join(ChunkTask task) throws IOException {
+
+        try {
+            return task.join();
+        }
+
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // This method returns the byte offsets that divide the file into chunks. Each offset after the
+    // first is placed just after a newline so that no line is split between two chunks.
+    private static long[] split(FileChannel channel, int parallelism) throws IOException {
+
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (parallelism * 4L) + 1));
+        List<Long> bounds = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long offset = 0;
+
+        bounds.add(0L);
+
+        while (offset + chunkSize < size) {
+            long next = nextLineStart(channel, offset + chunkSize, probe);
+
+            if (next >= size) {
+                break;
+            }
+
+            bounds.add(next);
+            offset = next;
+        }
+
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+
+        return result;
+    }
+
+    // This method returns the offset of the first line that starts at or after position.
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position - 1);
+
+            if (read <= 0) {
+                return channel.size();
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+
+            position += read;
+        }
+    }
+
+    // This class parses one chunk of the file into its cars, in line order.
+    private static class ChunkTask extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MappedByteBuffer region;
+
+        ChunkTask(MappedByteBuffer region) {
+            this.region = region;
+        }
+
+        @Override
+        protected Chunk compute() {
+
+            Chunk chunk = new Chunk();
+
+            try (CarDataParser parser = new CarDataParser(region)) {
+
+                while (parser.nextLine()) {
+
+                    if (parser.hasError()) {
+                        chunk.addError(parser.getLineNumber(), parser.getErrorReason());
+                    }
+
+                    else if (parser.getType() == 'P') {
+                        chunk.add(new PremiumCar(parser.getYear(), parser.getPrice(), parser.getMakeId(), parser.getModelId()),
+                            parser.getFloor(), parser.getSpace());
+                    }
+
+                    else {
+                        chunk.add(new BasicCar(parser.getYear(), parser.getPrice(), parser.getMakeId(), parser.getModelId()),
+                            parser.getFloor(), parser.getSpace());
+                    }
+                }
+
+                chunk.lines = parser.getLineNumber();
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return chunk;
+        }
+    }
+
+    // This class holds the parsed cars of one chunk in parallel arrays, along with the errors found in it.
+    // Line numbers are relative to the start of the chunk until the chunk is added to the vending machine.
+    private static class Chunk {
+
+        private Car[] cars = new Car[1024];
+        private int[] floors = new int[1024];
+        private int[] spaces = new int[1024];
+        private int size;
+        private int lines;
+
+        private List<Integer> errorLines = new ArrayList<>();
+        private List<String> errors = new ArrayList<>();
+
+        // This method appends a parsed car, growing the arrays when they are full.
+        void add(Car car, int floor, int space) {
+
+            if (size == cars.length) {
+                int capacity = size * 2;
+                cars = Arrays.copyOf(cars, capacity);
+                floors = Arrays.copyOf(floors, capacity);
+                spaces = Arrays.copyOf(spaces, capacity);
+            }
+
+            cars[size] = car;
+            floors[size] = floor;
+            spaces[size] = space;
+            size++;
+        }
+
+        void addError(int line, String reason) {
+            errorLines.add(line);
+            errors.add(reason);
+        }
+
+        // This method adds the cars to the vending machine in line order as one batch and prints the errors
+        // using line numbers counted from the start of the file.
+        void addTo(VendingMachine vendingMachine, int firstLine) {
+
+            for (int i = 0; i < errors.size(); i++) {
+                System.out.println("Error: Line " + (firstLine + errorLines.get(i)) + ": " + errors.get(i));
+            }
+
+            vendingMachine.addCars(Arrays.copyOf(cars, size), Arrays.copyOf(floors, size), Arrays.copyOf(spaces, size));
+        }
+    }
+}
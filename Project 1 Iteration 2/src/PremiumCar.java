@@ -3,7 +3,16 @@ public class PremiumCar extends Car{
     public PremiumCar(int year, double price, String make, String model) {
         super(year, price, make, model);
     }
+
+    public PremiumCar(int year, double price, int makeId, int modelId) {
+        super(year, price, makeId, modelId);
+    }
     
+    @Override
+    public char getType() {
+        return 'P';
+    }
+
     @Override
     public String toString() {
         return "Premium Car: "  + year + make + " " + model + " " + " - $" + price + "0";
@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// This program compares slot lookups through the old HashMap<List<Integer>, Car> index with
+// lookups through the packed slot array in VendingMachine. Run it with a large heap, e.g.
+// java -Xmx4g SlotLookupBenchmark 1000 1000
+public class SlotLookupBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) {
+
+        int floors = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int spaces = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        VendingMachine vendingMachine = new VendingMachine(floors, spaces);
+        HashMap<List<Integer>, Car> carsByPos = new HashMap<>();
+
+        for (int floor = 1; floor <= floors; floor++) {
+            for (int space = 1; space <= spaces; space++) {
+                Car car = new BasicCar(2020, 20000.00, "Toyota", "Prius");
+                vendingMachine.addCar(car, floor, space);
+                carsByPos.put(asList(floor, space), car);
+            }
+        }
+
+        System.out.println("Occupied slots: " + (floors * spaces));
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d: HashMap %,.0f lookups/s, slot array %,.0f lookups/s%n", round,
+                hashMapLookups(carsByPos, floors, spaces), slotLookups(vendingMachine, floors, spaces));
+        }
+    }
+
+    // This method returns the lookups per second of the old boxed-key HashMap index.
+    private static double hashMapLookups(HashMap<List<Integer>, Car> carsByPos, int floors, int spaces) {
+
+        int found = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            int floor = (int) ((i * 2654435761L) % floors) + 1;
+            int space = i % spaces + 1;
+
+            if (carsByPos.get(asList(floor, space)) != null) {
+                found++;
+            }
+        }
+
+        return perSecond(found, System.nanoTime() - start);
+    }
+
+    // This method returns the lookups per second of the packed slot array in VendingMachine.
+    private static double slotLookups(VendingMachine vendingMachine, int floors, int spaces) {
+
+        int found = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            int floor = (int) ((i * 2654435761L) % floors) + 1;
+            int space = i % spaces + 1;
+
+            if (vendingMachine.peekCar(floor, space) != null) {
+                found++;
+            }
+        }
+
+        return perSecond(found, System.nanoTime() - start);
+    }
+
+    // This method converts a lookup count and elapsed nanoseconds into lookups per second.
+    private static double perSecond(int lookups, long nanos) {
+        return lookups * 1e9 / nanos;
+    }
+
+    // This method builds a key the same way the old VendingMachine did.
+    private static List<Integer> asList(int x, int y) {
+        List<Integer> list = new ArrayList<Integer>();
+        list.add(x);
+        list.add(y);
+        return list;
+    }
+}
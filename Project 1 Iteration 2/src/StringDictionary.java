@@ -0,0 +1,187 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// This class gives each distinct string a small integer id, starting at 0, so repeated values such as
+// makes and models can be stored as ints and compared with ==. Strings can also be looked up straight
+// from UTF-8 bytes, which lets a parser find the id of a value it has seen before without creating a
+// String for it.
+//
+// One dictionary can be shared by parallel loaders. Looking up a string that is already known takes no
+// lock: ids are found in a ConcurrentHashMap, and strings and bytes are read from arrays published
+// through a volatile field. Only adding a new string is synchronized. The arrays and the byte lookup
+// table double when they fill up, so adding N strings costs O(N) in all.
+public class StringDictionary {
+
+    private final Map<String, Integer> ids;
+    private volatile Entries entries;
+
+    public StringDictionary() {
+        ids = new ConcurrentHashMap<>();
+        entries = new Entries(new String[16], new byte[16][], new int[16], new int[64], 0);
+    }
+
+    // This method returns the id of a string, adding the string if it has not been seen before.
+    public int idOf(String value) {
+
+        Integer id = ids.get(value);
+        return id == null ? add(value, value.getBytes(StandardCharsets.UTF_8)) : id;
+    }
+
+    // This method returns the id of the string encoded by length UTF-8 bytes starting at offset, adding the
+    // string if it has not been seen before. Only a new string is decoded.
+    public int idOf(byte[] bytes, int offset, int length) {
+
+        Entries current = entries;
+        int hash = hash(bytes, offset, length);
+        int mask = current.table.length - 1;
+
+        for (int i = hash & mask; current.table[i] != 0; i = (i + 1) & mask) {
+            int id = current.table[i] - 1;
+
+            // An id added after this reader fetched the entries is skipped; the slow path below finds it.
+            if (id >= current.size) {
+                continue;
+            }
+
+            byte[] encoded = current.encodedValues[id];
+
+            if (current.hashes[id] == hash
+                    && Arrays.equals(encoded, 0, encoded.length, bytes, offset, offset + length)) {
+                return id;
+            }
+        }
+
+        String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        Integer id = ids.get(value);
+
+        return id == null ? add(value, Arrays.copyOfRange(bytes, offset, offset + length)) : id;
+    }
+
+    // This method returns the id of a string, or -1 if it has not been seen. A string being added right now
+    // may already be in the byte lookup table but not yet in the map, so a miss waits for any add in
+    // progress and looks again.
+    public int find(String value) {
+
+        Integer id = ids.get(value);
+
+        if (id == null) {
+            synchronized (this) {
+                id = ids.get(value);
+            }
+        }
+
+        return id == null ? -1 : id;
+    }
+
+    // This method returns the string with a given id.
+    public String get(int id) {
+
+        Entries current = entries;
+
+        if (id < 0 || id >= current.size) {
+            throw new IndexOutOfBoundsException("Index " + id + " out of bounds for length " + current.size);
+        }
+
+        return current.values[id];
+    }
+
+    public int size() {
+        return entries.size;
+    }
+
+    // This method stores a new string under the next id, unless another thread added it first. The arrays
+    // are filled in beyond the published size, where readers never look, and the new id goes into the
+    // current byte lookup table, where readers skip ids beyond their size. Arrays and table are copied only
+    // when they double, so each new string costs O(1) amortised.
+    private synchronized int add(String value, byte[] encoded) {
+
+        Integer existing = ids.get(value);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        Entries current = entries;
+        int id = current.size;
+        String[] values = current.values;
+        byte[][] encodedValues = current.encodedValues;
+        int[] hashes = current.hashes;
+
+        if (id == values.length) {
+            values = Arrays.copyOf(values, id * 2);
+            encodedValues = Arrays.copyOf(encodedValues, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+
+        values[id] = value;
+        encodedValues[id] = encoded;
+        hashes[id] = hash(encoded, 0, encoded.length);
+
+        int[] table;
+
+        if ((id + 1) * 2 > current.table.length) {
+            table = new int[current.table.length * 2];
+
+            for (int i = 0; i <= id; i++) {
+                insert(table, hashes, i);
+            }
+        }
+
+        else {
+            table = current.table;
+            insert(table, hashes, id);
+        }
+
+        entries = new Entries(values, encodedValues, hashes, table, id + 1);
+        ids.put(value, id);
+
+        return id;
+    }
+
+    // This method puts an id into a byte lookup table.
+    private static void insert(int[] table, int[] hashes, int id) {
+
+        int mask = table.length - 1;
+        int i = hashes[id] & mask;
+
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+
+        table[i] = id + 1;
+    }
+
+    // This method hashes a run of bytes. The result is spread so that similar strings use different entries.
+    private static int hash(byte[] bytes, int offset, int length) {
+
+        int hash = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    // This class is the strings of a dictionary as readers see them: the first size entries of the arrays
+    // and an open-addressing table that finds ids by their UTF-8 bytes. Each table entry is an id plus
+    // one, and 0 marks an empty entry.
+    private static final class Entries {
+
+        private final String[] values;
+        private final byte[][] encodedValues;
+        private final int[] hashes;
+        private final int[] table;
+        private final int size;
+
+        private Entries(String[] values, byte[][] encodedValues, int[] hashes, int[] table, int size) {
+            this.values = values;
+            this.encodedValues = encodedValues;
+            this.hashes = hashes;
+            this.table = table;
+            this.size = size;
+        }
+    }
+}
@@ -1,72 +1,475 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+// In concurrent mode the vending machine can be shared by several threads. Each floor is guarded by one
+// of a fixed set of striped locks, so operations on different floors run in parallel, and the shared
+// indexes are concurrent collections. Every change to a car's index entries happens while its floor is
+// locked, so the indexes never disagree about a car once an operation has returned.
 public class VendingMachine {
-    
-    public double bankroll;
-    
+
+    // This enum chooses the floor that addCar(car) parks a car on when no position is given.
+    public enum SlotPolicy {
+
+        // The lowest floor with a free space, so the tower fills from the bottom up.
+        LOWEST_FLOOR,
+
+        // The floor with the most free spaces, so cars are spread evenly over the floors.
+        MOST_FREE_FLOOR
+    }
+
+    private static final int MAX_LOCK_STRIPES = 64;
+
+    // Listings are rendered through a buffer of up to RENDER_LINES lines of RENDER_LINE_SIZE characters.
+    private static final int RENDER_LINES = 128;
+    private static final int RENDER_LINE_SIZE = 512;
+
+    // Cars are ordered by their position last so that two cars with the same price, year or name are
+    // still distinct entries in the sorted indexes.
+    private static final Comparator<Car> BY_POSITION = Comparator.comparingInt(Car::getFloor)
+        .thenComparingInt(Car::getSpace);
+    private static final Comparator<Car> BY_PRICE = Comparator.comparingDouble(Car::getPrice)
+        .thenComparing(BY_POSITION);
+    private static final Comparator<Car> BY_YEAR = Comparator.comparingInt(Car::getYear)
+        .thenComparing(BY_POSITION);
+    private static final Comparator<Car> BY_NAME = Comparator.comparing(Car::getMake)
+        .thenComparing(Car::getModel)
+        .thenComparing(BY_POSITION);
+
     private int floors;
     private int spaces;
 
-    private List<Car> cars;
-    private HashMap<List<Integer>, Car> carsByPos;
-    private HashMap<String, List<Car>> carsByManufacturer;
+    private Set<Car> cars;
+    private Car[] carsByPos;
+
+    // One bit per space, set when the space is occupied. Each floor starts on a new word so that floors
+    // locked by different threads never share a word, and the padding bits after the last space are set.
+    private int wordsPerFloor;
+    private long[] occupiedSpaces;
+    private int[] carsPerFloor;
+
+    // One bit per floor, set while the floor has a free space, so addCar(car) finds the lowest such floor
+    // a word at a time. The buckets hold the same kind of bitmap for each number of free spaces from 1 to
+    // spaces, and a floor's bit is set in the bucket for its free count. No bucket above mostFreeHint has a
+    // floor in it. A floor's bits change while its floor is locked, but floors locked by different threads
+    // share words, so every update is atomic.
+    private int floorWords;
+    private AtomicLongArray floorsWithSpace;
+    private AtomicLongArray floorsByFreeCount;
+    private AtomicInteger mostFreeHint;
+    private SlotPolicy slotPolicy;
+    private NavigableSet<Car> carsByPrice;
+    private NavigableSet<Car> carsByYear;
+    private NavigableSet<Car> carsByName;
+    private Map<Integer, Set<Car>> basicCarsByManufacturer;
+    private Map<Integer, Set<Car>> premiumCarsByManufacturer;
     private Queue<Car> carWashQueue;
+    private CarWash carWash;
+    private MutationLog mutationLog;
+    private InventoryEventBus eventBus;
+    private VendingMachineMetrics metrics;
+
+    private ReentrantLock[] floorLocks;
+    private InventoryStats stats;
 
     // The constructor that initializes the data structures and data members. It takes two ints
     // that define the size of the vending machine.
     public VendingMachine(int floors, int spaces) {
+        this(floors, spaces, false);
+    }
+
+    // This constructor also takes whether the vending machine will be shared between threads. A concurrent
+    // vending machine lists its inventory by position rather than in the order the cars were added.
+    public VendingMachine(int floors, int spaces, boolean concurrent) {
         
         this.floors = floors;
         this.spaces = spaces;
-        cars = new LinkedList<>();
-        carsByPos = new HashMap<>();
-        carsByManufacturer = new HashMap<>();
-        carWashQueue = new LinkedList<>();
+        carsByPos = new Car[floors * spaces];
+        stats = new InventoryStats();
+        wordsPerFloor = (spaces + 63) >>> 6;
+        occupiedSpaces = new long[floors * wordsPerFloor];
+        carsPerFloor = new int[floors];
+        floorWords = (floors + 63) >>> 6;
+        floorsWithSpace = new AtomicLongArray(floorWords);
+        floorsByFreeCount = new AtomicLongArray(Math.max(0, spaces) * floorWords);
+        mostFreeHint = new AtomicInteger(Math.max(0, spaces));
+        slotPolicy = SlotPolicy.LOWEST_FLOOR;
+
+        if (spaces % 64 != 0) {
+            for (int floor = 1; floor <= floors; floor++) {
+                occupiedSpaces[floor * wordsPerFloor - 1] = -1L << (spaces % 64);
+            }
+        }
+
+        if (spaces > 0) {
+            for (int floor = 1; floor <= floors; floor++) {
+                setFloorBit(floorsWithSpace, 0, floor);
+                setFloorBit(floorsByFreeCount, (spaces - 1) * floorWords, floor);
+            }
+        }
+
+        if (concurrent) {
+            cars = new ConcurrentSkipListSet<>(BY_POSITION);
+            carsByPrice = new ConcurrentSkipListSet<>(BY_PRICE);
+            carsByYear = new ConcurrentSkipListSet<>(BY_YEAR);
+            carsByName = new ConcurrentSkipListSet<>(BY_NAME);
+            basicCarsByManufacturer = new ConcurrentHashMap<>();
+            premiumCarsByManufacturer = new ConcurrentHashMap<>();
+            carWashQueue = new ConcurrentLinkedQueue<>();
+            floorLocks = new ReentrantLock[Math.max(1, Math.min(floors, MAX_LOCK_STRIPES))];
+
+            for (int i = 0; i < floorLocks.length; i++) {
+                floorLocks[i] = new ReentrantLock();
+            }
+        }
+
+        else {
+            cars = new LinkedHashSet<>();
+            carsByPrice = new TreeSet<>(BY_PRICE);
+            carsByYear = new TreeSet<>(BY_YEAR);
+            carsByName = new TreeSet<>(BY_NAME);
+            basicCarsByManufacturer = new HashMap<>();
+            premiumCarsByManufacturer = new HashMap<>();
+            carWashQueue = new LinkedList<>();
+        }
     }
 
-    // This method adds a car if the space isn't occupied and within the bounds of the vending machine.
-    public void addCar(Car car, int floor, int space) {
+    // This method sends future wash requests to a multi-bay car wash instead of the built-in queue. Pass
+    // null to go back to the built-in queue. The bays publish a PROCESS_WASH event to the event bus as they
+    // finish each car, outside any floor lock.
+    public void setCarWash(CarWash carWash) {
+        this.carWash = carWash;
+    }
 
-        if (isEmptySpace(floor, space) && isValidSpace(floor, space)) {
-            cars.add(car);
+    // This method records every future change in a write-ahead log, so the changes survive a crash. Pass
+    // null to stop logging. Changes are applied in memory first and return once the log's sync policy is
+    // satisfied. If the log cannot write or sync, the change that runs into it and every later change
+    // throw UncheckedIOException. Such a change has been applied in memory but is not durable.
+    public void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
 
-            List<Integer> pos = asList(floor, space);
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
 
-            carsByPos.put(pos, car);
-            String make = car.getMake();
+    // This method publishes every future change to an event bus, so other systems can follow along. Pass
+    // null to stop publishing. Events are published while the car's floor is locked, so the events for one
+    // floor are in the order the changes happened.
+    public void setEventBus(InventoryEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
 
-            if (!hasManufacturer(make)) {
-                carsByManufacturer.put(make, new ArrayList<Car>());
+    public InventoryEventBus getEventBus() {
+        return eventBus;
+    }
+
+    // This method counts and times future calls to the main operations. Pass null to stop measuring.
+    public void setMetrics(VendingMachineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public VendingMachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    // This method sets how addCar(car) chooses a floor.
+    public void setSlotPolicy(SlotPolicy slotPolicy) {
+        this.slotPolicy = slotPolicy;
+    }
+
+    public SlotPolicy getSlotPolicy() {
+        return slotPolicy;
+    }
+
+    // This method returns true if the vending machine can be shared between threads.
+    public boolean isConcurrent() {
+        return floorLocks != null;
+    }
+
+    // This method returns the total price of every car sold so far.
+    public double getBankroll() {
+        return stats.getRevenueCents() / 100.0;
+    }
+
+    public int getFloors() {
+        return floors;
+    }
+
+    public int getSpaces() {
+        return spaces;
+    }
+
+    // This method returns the running totals for the inventory and sales.
+    public InventoryStats getStats() {
+        return stats;
+    }
+
+    // This method returns the number of cars parked on a floor, or 0 for a floor that doesn't exist. The
+    // count is kept up to date as cars come and go, so nothing is scanned.
+    public int getOccupiedSpaces(int floor) {
+        return 0 < floor && floor <= floors ? carsPerFloor[floor - 1] : 0;
+    }
+
+    // This method returns the number of free spaces on a floor, or 0 for a floor that doesn't exist.
+    public int getFreeSpaces(int floor) {
+        return 0 < floor && floor <= floors ? spaces - carsPerFloor[floor - 1] : 0;
+    }
+
+    // This method returns the number of free spaces in the whole vending machine.
+    public long getFreeSpaces() {
+        return (long) floors * spaces - stats.getCarCount();
+    }
+
+    // This method adds a car if the space isn't occupied and within the bounds of the vending machine. It
+    // returns true if the car was added, which is decided under the floor lock. A car can only be parked in
+    // one space at a time, since its position is its key in the sorted indexes, so a car that is already
+    // parked is refused until it has been sold.
+    public boolean addCar(Car car, int floor, int space) {
+
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.ADD_CAR);
+        MutationLog log = mutationLog;
+        long sequence = 0;
+        boolean placed = false;
+        lockFloor(floor);
+
+        try {
+            if (car.getFloor() == 0 && isValidSpace(floor, space) && isEmptySpace(floor, space)) {
+                sequence = placeCar(car, floor, space, log);
+                placed = true;
             }
+        }
 
-            carsByManufacturer.get(make).add(car);
+        finally {
+            unlockFloor(floor);
         }
+
+        commitLog(log, sequence);
+        endTimer(metrics, VendingMachineMetrics.Operation.ADD_CAR, start, placed);
+        return placed;
     }
 
-    // This method sells a car given a location.
-    public void sellCar(int floor, int space) {
+    // This method parks a car in a free space chosen by the slot policy and returns true, or returns false
+    // if the vending machine is full or the car is already parked. The car's position is set to the space
+    // it was given. The floor is
+    // found from the floor bitmaps and the space from the floor's occupancy bits, a word at a time, so no
+    // floor or space is probed one by one.
+    public boolean addCar(Car car) {
 
-        Car car = getCar(floor, space);
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.ADD_CAR);
+        MutationLog log = mutationLog;
+        int floor = car.getFloor() == 0 ? chooseFloor() : 0;
 
-        if (car != null) {
-            bankroll += car.getPrice();
-            removeCar(floor, space);
+        while (floor > 0) {
+            long sequence = 0;
+            int space;
+            lockFloor(floor);
+
+            try {
+                space = firstFreeSpace(floor);
+
+                if (space > 0) {
+                    sequence = placeCar(car, floor, space, log);
+                }
+            }
+
+            finally {
+                unlockFloor(floor);
+            }
+
+            if (space > 0) {
+                commitLog(log, sequence);
+                endTimer(metrics, VendingMachineMetrics.Operation.ADD_CAR, start, true);
+                return true;
+            }
+
+            // Another thread took the last space on the floor first.
+            floor = chooseFloor();
+        }
+
+        endTimer(metrics, VendingMachineMetrics.Operation.ADD_CAR, start, false);
+        return false;
+    }
+
+    // This method sells a car given a location and returns it, or null if there was no car to sell.
+    public Car sellCar(int floor, int space) {
+        return sellCar(floor, space, true);
+    }
+
+    // This method sells a car like sellCar(floor, space). If report is false, nothing is printed for an
+    // invalid or empty space, which suits callers such as the HTTP server that answer for themselves.
+    Car sellCar(int floor, int space, boolean report) {
+
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.SELL_CAR);
+        Car car;
+        MutationLog log = mutationLog;
+        long sequence = 0;
+        lockFloor(floor);
+
+        try {
+            car = getCar(floor, space, report);
+
+            if (car != null) {
+                stats.recordSale(car);
+                removeCar(floor, space);
+                publish(InventoryEventBus.EventType.SELL, floor, space, car);
+
+                if (log != null) {
+                    sequence = log.logSell(floor, space);
+                }
+            }
+        }
+
+        finally {
+            unlockFloor(floor);
+        }
+
+        commitLog(log, sequence);
+        endTimer(metrics, VendingMachineMetrics.Operation.SELL_CAR, start, car != null);
+        return car;
+    }
+
+    // This method parks many cars at once, each in a free space chosen by the slot policy, and reports for
+    // each car whether it was added or the vending machine was full. It works like addCars(cars, floors,
+    // spaces) in every other way.
+    public BulkResult addCars(Collection<Car> newCars) {
+        return placeCars(newCars.toArray(new Car[0]), null, null);
+    }
+
+    // This method adds many cars at once, car i at floor carFloors[i] and space carSpaces[i], and reports
+    // for each car whether it was added or why not. The cars are placed in order, so when two cars in the
+    // batch ask for the same space the earlier one gets it, as with one addCar call per car. Every car is
+    // checked and placed first, and only then is each index updated, once, with all the added cars. In
+    // concurrent mode every floor is locked once for the whole batch instead of once per car. A car that is
+    // already parked, or appears twice in the batch, is reported as ALREADY_PARKED.
+    public BulkResult addCars(Car[] newCars, int[] carFloors, int[] carSpaces) {
+
+        if (carFloors.length != newCars.length || carSpaces.length != newCars.length) {
+            throw new IllegalArgumentException("There must be a floor and a space for every car.");
         }
+
+        return placeCars(newCars, carFloors, carSpaces);
+    }
+
+    // This method sells the cars at many positions at once, the car at floor carFloors[i] and space
+    // carSpaces[i] for item i, and reports for each position the car sold or why there was none. Nothing
+    // is printed for an empty or invalid space. Like addCars, the positions are all checked first, each
+    // index is then updated once, and in concurrent mode every floor is locked once for the whole batch.
+    public BulkResult sellCars(int[] carFloors, int[] carSpaces) {
+
+        if (carFloors.length != carSpaces.length) {
+            throw new IllegalArgumentException("There must be a space for every floor.");
+        }
+
+        VendingMachineMetrics metrics = this.metrics;
+        MutationLog log = mutationLog;
+        BulkResult result = new BulkResult(carFloors.length);
+        Car[] sold = new Car[carFloors.length];
+        int count = 0;
+        long sequence = 0;
+        lockAllFloors();
+
+        try {
+            if (log != null) {
+                log.checkFailure();
+            }
+
+            for (int i = 0; i < carFloors.length; i++) {
+                int floor = carFloors[i];
+                int space = carSpaces[i];
+
+                if (!isValidSpace(floor, space)) {
+                    result.set(i, BulkResult.Status.INVALID_SPACE, null, floor, space);
+                    continue;
+                }
+
+                Car car = carsByPos[slot(floor, space)];
+
+                if (car == null) {
+                    result.set(i, BulkResult.Status.NO_CAR, null, floor, space);
+                    continue;
+                }
+
+                carsByPos[slot(floor, space)] = null;
+                sold[count++] = car;
+                result.set(i, BulkResult.Status.SOLD, car, floor, space);
+            }
+
+            // The cars still have their positions here, which the indexes use to tell equal cars apart.
+            sold = Arrays.copyOf(sold, count);
+            unindexCars(sold);
+
+            for (Car car : sold) {
+                stats.recordSale(car);
+                stats.remove(car);
+                markFree(car.getFloor(), car.getSpace());
+                publish(InventoryEventBus.EventType.SELL, car.getFloor(), car.getSpace(), car);
+            }
+
+            // The sales are logged only once they are complete in memory, so a log that fails part way
+            // leaves the vending machine consistent, with the rest of the sales applied but not durable.
+            for (Car car : sold) {
+                if (log != null) {
+                    sequence = log.logSell(car.getFloor(), car.getSpace());
+                }
+
+                car.setPosition(0, 0);
+            }
+        }
+
+        finally {
+            unlockAllFloors();
+        }
+
+        commitLog(log, sequence);
+        countBulk(metrics, VendingMachineMetrics.Operation.SELL_CAR, result);
+        return result;
     }
 
     // This method prints a message if a car is found at the given location.
     public void testDrive(int floor, int space) {
-        
-        Car car = getCar(floor, space);
-        
+
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.GET_CAR);
+        Car car;
+        lockFloor(floor);
+
+        try {
+            car = getCar(floor, space);
+        }
+
+        finally {
+            unlockFloor(floor);
+        }
+
+        endTimer(metrics, VendingMachineMetrics.Operation.GET_CAR, start, car != null);
+
         if (car != null) {
-            System.out.println("Car retrieved: " + car.toString());
+            newRenderer(1).writeCar("Car retrieved: ", car).flush();
         }
     }
 
@@ -75,155 +478,1066 @@ public class VendingMachine {
         printCarList(cars);
     }
  
-    // This method prints out the inventory sorted by price or by year.
+    // This method prints out the inventory sorted by price, by year or alphabetically.
     public void printSortedInventory(String condition) {
 
-        List<Car> sortedCars = getSorted(cars, condition);
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.PRINT_SORTED_INVENTORY);
+        Collection<Car> sortedCars = getSorted(condition);
+
         printCarList(sortedCars);
+        endTimer(metrics, VendingMachineMetrics.Operation.PRINT_SORTED_INVENTORY, start, true);
     }
 
     // This method prints the cars in the inventory that match the make and type.
     public void printCarsByMakeType(String make, String type) {
 
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.PRINT_CARS_BY_MAKE_TYPE);
+        Collection<Car> matchedCars = getCarsByMakeType(make, type);
+
+        if (matchedCars.size() == 0) {
+            System.out.println("No Cars Matched the Description.");
+        }
+
+        printCarList(matchedCars);
+        endTimer(metrics, VendingMachineMetrics.Operation.PRINT_CARS_BY_MAKE_TYPE, start, !matchedCars.isEmpty());
+    }
+
+    // This method returns the cars of a given make and type, "B" for basic or "P" for premium.
+    public Collection<Car> getCarsByMakeType(String make, String type) {
+
+        if (type.length() != 1) {
+            return Collections.emptySet();
+        }
+
+        Map<Integer, Set<Car>> carsOfType = getCarsByManufacturer(Character.toUpperCase(type.charAt(0)));
+        int makeId = Car.MAKES.find(make);
+        Set<Car> matchedCars = carsOfType == null || makeId < 0 ? null : carsOfType.get(makeId);
+
+        if (matchedCars == null) {
+            return Collections.emptySet();
+        }
+
+        return Collections.unmodifiableSet(matchedCars);
+    }
+
+    // This method returns the cars priced from minPrice to maxPrice inclusive, cheapest first.
+    public List<Car> getCarsByPrice(double minPrice, double maxPrice) {
+
+        if (minPrice > maxPrice) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<>(carsByPrice.subSet(bound(0, minPrice, true), true, bound(0, maxPrice, false), true));
+    }
+
+    // This method returns the cars built from minYear to maxYear inclusive, oldest first.
+    public List<Car> getCarsByYear(int minYear, int maxYear) {
+
+        if (minYear > maxYear) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<>(carsByYear.subSet(bound(minYear, 0, true), true, bound(maxYear, 0, false), true));
+    }
+
+    // This method returns the k cheapest cars, cheapest first.
+    public List<Car> getCheapest(int k) {
+        return firstK(carsByPrice.iterator(), k);
+    }
+
+    // This method returns the k newest cars, newest first.
+    public List<Car> getNewest(int k) {
+        return firstK(carsByYear.descendingIterator(), k);
+    }
+
+    // This method returns the k cheapest cars that cost at most maxPrice and were built in minYear or
+    // later, cheapest first. It walks the price index from the bottom and stops after k matches, so cars
+    // that are too old only cost time while they are cheaper than the k-th match.
+    public List<Car> getCheapest(int k, double maxPrice, int minYear) {
+
         List<Car> matchedCars = new ArrayList<>();
 
-        for (Car car : carsByManufacturer.get("make")) {
-            if ((type.equals("P") && car instanceof PremiumCar) || 
-                (type.equals("B") && car instanceof BasicCar)) {
+        for (Car car : carsByPrice.headSet(bound(0, maxPrice, false), true)) {
+
+            if (matchedCars.size() >= k) {
+                break;
+            }
+
+            if (car.getYear() >= minYear) {
                 matchedCars.add(car);
             }
         }
 
-        if (matchedCars.size() == 0) {
-            System.out.println("No Cars Matched the Description.");
-        }
+        return matchedCars;
+    }
 
-        printCarList(matchedCars);
+    // This method adds a car to the wash queue given a location and returns it, or null if there was no car
+    // to wash. If a car wash is attached and its queue is full, the method waits for a free place after
+    // releasing the floor. It also returns null if the attached car wash is closed and the car was not
+    // queued.
+    public Car addCarToWash(int floor, int space) {
+        return addCarToWash(floor, space, true);
     }
 
-    // This method adds a car to the wash queue given a location.
-    public void addCarToWash(int floor, int space) {
+    // This method adds a car to the wash queue like addCarToWash(floor, space). The car is found and queued
+    // under one floor lock. If report is false, nothing is printed for an invalid or empty space or for a
+    // closed car wash.
+    Car addCarToWash(int floor, int space, boolean report) {
 
-        Car car = getCar(floor, space);
+        Car car;
+        CarWash wash = carWash;
+        MutationLog log = mutationLog;
+        long sequence = 0;
+        lockFloor(floor);
 
-        if (car != null) {
-            carWashQueue.add(car);
+        try {
+            car = getCar(floor, space, report);
+
+            if (car != null && wash != null && !wash.isOpen()) {
+                if (report) {
+                    printWashClosed(car);
+                }
+
+                car = null;
+            }
+
+            if (car != null) {
+                publish(InventoryEventBus.EventType.WASH, floor, space, car);
+            }
+
+            if (car != null && wash == null) {
+                sequence = enqueueWash(car, floor, space, log);
+            }
+        }
+
+        finally {
+            unlockFloor(floor);
         }
+
+        commitLog(log, sequence);
+
+        if (car != null && wash != null && !submitToCarWash(wash, car, floor, space, report)) {
+            return null;
+        }
+
+        return car;
     }
 
-    // This method processes the car wash queue.
+    // This method processes the car wash queue. If a car wash is attached, its bays process the queue on
+    // their own and this method prints their statistics instead. The queue is emptied with every floor
+    // locked, so a logged or saved wash queue always matches the cars that were washed.
     public void processCarWashQueue() {
-        
-        if (carWashQueue.size() == 0) {
+
+        if (carWash != null) {
+            carWash.printStats();
+            return;
+        }
+
+        List<Car> washedCars;
+        MutationLog log = mutationLog;
+        long sequence = 0;
+        lockAllFloors();
+
+        try {
+            washedCars = drainWashQueue();
+
+            for (Car car : washedCars) {
+                publish(InventoryEventBus.EventType.PROCESS_WASH, car.getFloor(), car.getSpace(), car);
+            }
+
+            if (log != null && !washedCars.isEmpty()) {
+                sequence = log.logProcessWash();
+            }
+        }
+
+        finally {
+            unlockAllFloors();
+        }
+
+        commitLog(log, sequence);
+
+        if (washedCars.isEmpty()) {
             System.out.println("No cars in the wash queue.");
             return;
         }
 
-        while (carWashQueue.size() > 0) {
-            Car car = carWashQueue.poll();
-            System.out.println("Washing: " + car.toString());
+        InventoryRenderer renderer = newRenderer(washedCars.size());
+
+        for (Car car : washedCars) {
+            renderer.writeCar("Washing: ", car);
+        }
+
+        renderer.flush();
+    }
+
+    // This method returns the car at a given location without printing anything. It returns null if the
+    // space is invalid or empty.
+    public Car peekCar(int floor, int space) {
+
+        VendingMachineMetrics metrics = this.metrics;
+        long start = startTimer(metrics, VendingMachineMetrics.Operation.GET_CAR);
+        Car car = null;
+
+        if (isValidSpace(floor, space)) {
+            lockFloor(floor);
+
+            try {
+                car = carsByPos[slot(floor, space)];
+            }
+
+            finally {
+                unlockFloor(floor);
+            }
+        }
+
+        endTimer(metrics, VendingMachineMetrics.Operation.GET_CAR, start, car != null);
+        return car;
+    }
+
+    // This method returns a read-only view of every car in the inventory. In concurrent mode, hold
+    // lockAllFloors() while reading it to see a consistent inventory.
+    Collection<Car> getInventory() {
+        return Collections.unmodifiableCollection(cars);
+    }
+
+    // This method adds many cars to an empty vending machine at once, for restoring saved state. Each car's
+    // position must already be set. Instead of inserting the cars into the sorted indexes one by one, it
+    // sorts them once per index and, unless the machine is concurrent, builds each index from the sorted
+    // array in linear time. Cars with an invalid or already taken position are skipped. It returns the
+    // number of cars added.
+    int restoreInventory(Car[] restoredCars) {
+
+        int count = 0;
+        Car[] added = new Car[restoredCars.length];
+
+        lockAllFloors();
+
+        try {
+            if (!cars.isEmpty()) {
+                throw new IllegalStateException("The vending machine is not empty.");
+            }
+
+            for (Car car : restoredCars) {
+                int floor = car.getFloor();
+                int space = car.getSpace();
+
+                if (isValidSpace(floor, space) && isEmptySpace(floor, space)) {
+                    carsByPos[slot(floor, space)] = car;
+                    markOccupied(floor, space);
+                    cars.add(car);
+                    addToBucket(getCarsByManufacturer(car.getType()), car);
+                    stats.add(car);
+                    added[count++] = car;
+                }
+            }
+
+            added = Arrays.copyOf(added, count);
+            carsByPrice = addSorted(carsByPrice, added, BY_PRICE);
+            carsByYear = addSorted(carsByYear, added, BY_YEAR);
+            carsByName = addSorted(carsByName, added, BY_NAME);
+            return count;
+        }
+
+        finally {
+            unlockAllFloors();
+        }
+    }
+
+    // This method returns a read-only view of the inventory sorted by price, by year or alphabetically, or
+    // an empty collection for any other condition.
+    Collection<Car> getSortedInventory(String condition) {
+        return Collections.unmodifiableCollection(getSorted(condition));
+    }
+
+    // This method puts a car at the back of the built-in wash queue and logs it. Cars on different floors
+    // can be queued at the same time, so the queue's monitor keeps the order of the wash records in the log
+    // the same as the order of the queue. The car's floor must be locked. It returns the sequence number
+    // of the log record, or 0 if not logged.
+    private long enqueueWash(Car car, int floor, int space, MutationLog log) {
+
+        synchronized (carWashQueue) {
+            carWashQueue.add(car);
+            return log != null ? log.logWash(floor, space) : 0;
+        }
+    }
+
+    // This method returns the cars waiting in the built-in wash queue, front first.
+    List<Car> getWashQueue() {
+        return new ArrayList<>(carWashQueue);
+    }
+
+    // This method empties the built-in wash queue without printing anything and returns the cars that
+    // were in it, front first.
+    List<Car> drainWashQueue() {
+
+        List<Car> drained = new ArrayList<>();
+        Car car;
+
+        while ((car = carWashQueue.poll()) != null) {
+            drained.add(car);
+        }
+
+        return drained;
+    }
+
+    // This method puts a car at the back of the built-in wash queue without looking it up, for restoring
+    // saved state.
+    void restoreWashQueue(Car car) {
+        carWashQueue.add(car);
+    }
+
+    // This method locks every floor stripe in order, so no car can be added, sold or queued for a wash
+    // until unlockAllFloors() is called. It does nothing when the vending machine is not concurrent.
+    void lockAllFloors() {
+        if (floorLocks != null) {
+            for (ReentrantLock lock : floorLocks) {
+                lock.lock();
+            }
+        }
+    }
+
+    void unlockAllFloors() {
+        if (floorLocks != null) {
+            for (int i = floorLocks.length - 1; i >= 0; i--) {
+                floorLocks[i].unlock();
+            }
         }
     }
 
     // This method returns a car at a given location. It prints an error message if a car is not found and returns null.
     private Car getCar(int floor, int space) {
-        if (isEmptySpace(floor, space)) {
-            System.out.println("Car not located at (" + floor + ", " + space + ").");
-            return null;
-        }
+        return getCar(floor, space, true);
+    }
+
+    // This method returns a car at a given location, or null if there is none. The error message is only
+    // printed if report is true.
+    private Car getCar(int floor, int space, boolean report) {
 
         if (!isValidSpace(floor, space)) {
-            System.out.println("Invalid space at (" + floor + ", " + space + ").");
+            if (report) {
+                System.out.println("Invalid space at (" + floor + ", " + space + ").");
+            }
+
             return null;
         }
 
-        return carsByPos.get(asList(floor, space));
-    }   
+        Car car = carsByPos[slot(floor, space)];
+
+        if (car == null && report) {
+            System.out.println("Car not located at (" + floor + ", " + space + ").");
+        }
+
+        return car;
+    }
 
     // This method removes a car in a given space from all data structures.
     private void removeCar(int floor, int space) {
 
-        List<Integer> pos = asList(floor, space);
-        Car carToRemove = carsByPos.get(pos);
+        int slot = slot(floor, space);
+        Car carToRemove = carsByPos[slot];
 
         cars.remove(carToRemove);
-        carsByPos.remove(pos);
-        carsByManufacturer.remove(carToRemove.getMake());
+        carsByPrice.remove(carToRemove);
+        carsByYear.remove(carToRemove);
+        carsByName.remove(carToRemove);
+        removeFromBucket(getCarsByManufacturer(carToRemove.getType()), carToRemove);
+        stats.remove(carToRemove);
+        carsByPos[slot] = null;
+        markFree(floor, space);
+        carToRemove.setPosition(0, 0);
+    }
+
+    // This method puts a car in a free space and in every index, publishes it and logs it. The floor must be
+    // locked, the space valid and empty, and the car not parked anywhere. It returns the sequence number of
+    // the log record, or 0 if not logged.
+    private long placeCar(Car car, int floor, int space, MutationLog log) {
+
+        carsByPos[slot(floor, space)] = car;
+        markOccupied(floor, space);
+        car.setPosition(floor, space);
+        cars.add(car);
+        carsByPrice.add(car);
+        carsByYear.add(car);
+        carsByName.add(car);
+        addToBucket(getCarsByManufacturer(car.getType()), car);
+        stats.add(car);
+        publish(InventoryEventBus.EventType.ADD, floor, space, car);
+
+        return log != null ? log.logAdd(car) : 0;
+    }
+
+    // This method places a batch of cars with every floor locked, then adds them to the indexes and logs
+    // them. Without positions, each car goes to a free space chosen by the slot policy. A car that is
+    // already parked, including one placed earlier in the batch, is turned away, since its position is
+    // its key in the sorted indexes.
+    private BulkResult placeCars(Car[] newCars, int[] carFloors, int[] carSpaces) {
+
+        VendingMachineMetrics metrics = this.metrics;
+        MutationLog log = mutationLog;
+        BulkResult result = new BulkResult(newCars.length);
+        Car[] added = new Car[newCars.length];
+        int count = 0;
+        long sequence = 0;
+        boolean full = false;
+        lockAllFloors();
+
+        try {
+            if (log != null) {
+                log.checkFailure();
+            }
+
+            for (int i = 0; i < newCars.length; i++) {
+                Car car = newCars[i];
+                int floor;
+                int space;
+
+                if (car.getFloor() != 0) {
+                    result.set(i, BulkResult.Status.ALREADY_PARKED, car, car.getFloor(), car.getSpace());
+                    continue;
+                }
+
+                if (carFloors == null) {
+                    floor = full ? 0 : chooseFloor();
+                    space = floor > 0 ? firstFreeSpace(floor) : 0;
+
+                    if (space == 0) {
+                        // Nothing can be sold while the floors are locked, so every later car is turned away too.
+                        full = true;
+                        result.set(i, BulkResult.Status.FULL, car, 0, 0);
+                        continue;
+                    }
+                }
+
+                else {
+                    floor = carFloors[i];
+                    space = carSpaces[i];
+
+                    if (!isValidSpace(floor, space)) {
+                        result.set(i, BulkResult.Status.INVALID_SPACE, car, floor, space);
+                        continue;
+                    }
+
+                    if (!isEmptySpace(floor, space)) {
+                        result.set(i, BulkResult.Status.SPACE_TAKEN, car, floor, space);
+                        continue;
+                    }
+                }
+
+                carsByPos[slot(floor, space)] = car;
+                markOccupied(floor, space);
+                car.setPosition(floor, space);
+                stats.add(car);
+                publish(InventoryEventBus.EventType.ADD, floor, space, car);
+                added[count++] = car;
+                result.set(i, BulkResult.Status.ADDED, car, floor, space);
+            }
+
+            added = Arrays.copyOf(added, count);
+            indexCars(added);
+
+            // The cars are logged only once they are in every index, so a log that fails part way leaves
+            // the vending machine consistent, with the rest of the cars added but not durable.
+            if (log != null) {
+                for (Car car : added) {
+                    sequence = log.logAdd(car);
+                }
+            }
+        }
+
+        finally {
+            unlockAllFloors();
+        }
+
+        commitLog(log, sequence);
+        countBulk(metrics, VendingMachineMetrics.Operation.ADD_CAR, result);
+        return result;
+    }
+
+    // This method adds a batch of placed cars to every index, one index at a time. The inventory set of
+    // an empty vending machine is first recreated with room for the whole batch. An empty sorted index is
+    // built from the sorted batch in linear time, as restoreInventory does; otherwise the batch is sorted
+    // first, so consecutive inserts walk the index in order. Each make bucket is looked up once.
+    //
+    // The index fields are only ever replaced in a machine that is not concurrent. A concurrent machine's
+    // readers use the indexes without taking a floor lock, so there the cars always go into the existing
+    // sets, which every reader already sees.
+    private void indexCars(Car[] batch) {
+
+        if (batch.length == 0) {
+            return;
+        }
+
+        if (!isConcurrent() && cars.isEmpty()) {
+            cars = new LinkedHashSet<>(Math.max(16, (int) (batch.length / 0.75f) + 1));
+        }
+
+        Collections.addAll(cars, batch);
+        carsByPrice = addSorted(carsByPrice, batch, BY_PRICE);
+        carsByYear = addSorted(carsByYear, batch, BY_YEAR);
+        carsByName = addSorted(carsByName, batch, BY_NAME);
+        addToBuckets(basicCarsByManufacturer, batch, 'B');
+        addToBuckets(premiumCarsByManufacturer, batch, 'P');
+    }
+
+    // This method removes a batch of cars from every index, one index at a time, each in index order.
+    private void unindexCars(Car[] batch) {
+
+        if (batch.length == 0) {
+            return;
+        }
+
+        for (Car car : batch) {
+            cars.remove(car);
+        }
+
+        removeSorted(carsByPrice, batch, BY_PRICE);
+        removeSorted(carsByYear, batch, BY_YEAR);
+        removeSorted(carsByName, batch, BY_NAME);
+        removeFromBuckets(basicCarsByManufacturer, batch, 'B');
+        removeFromBuckets(premiumCarsByManufacturer, batch, 'P');
+    }
+
+    // This method returns the index with a batch of cars added. An empty index of a machine that is not
+    // concurrent is replaced by a new one built from the batch; otherwise the same index is returned.
+    private NavigableSet<Car> addSorted(NavigableSet<Car> index, Car[] batch, Comparator<Car> comparator) {
+
+        if (!isConcurrent() && index.isEmpty()) {
+            return buildIndex(batch, comparator);
+        }
+
+        Car[] sorted = batch.clone();
+        Arrays.sort(sorted, comparator);
+        Collections.addAll(index, sorted);
+
+        return index;
+    }
+
+    private void removeSorted(NavigableSet<Car> index, Car[] batch, Comparator<Car> comparator) {
+
+        Car[] sorted = batch.clone();
+        Arrays.sort(sorted, comparator);
+
+        for (Car car : sorted) {
+            index.remove(car);
+        }
+    }
+
+    // This method adds the cars of a type to their make buckets.
+    private void addToBuckets(Map<Integer, Set<Car>> carsByMake, Car[] batch, char type) {
+
+        for (Map.Entry<Integer, List<Car>> group : groupByMake(batch, type).entrySet()) {
+            carsByMake.compute(group.getKey(), (makeId, bucket) -> {
+
+                if (bucket == null) {
+                    bucket = newBucket();
+                }
+
+                bucket.addAll(group.getValue());
+                return bucket;
+            });
+        }
+    }
+
+    // This method removes the cars of a type from their make buckets and drops buckets that end up empty.
+    private void removeFromBuckets(Map<Integer, Set<Car>> carsByMake, Car[] batch, char type) {
+
+        for (Map.Entry<Integer, List<Car>> group : groupByMake(batch, type).entrySet()) {
+            carsByMake.computeIfPresent(group.getKey(), (makeId, bucket) -> {
+
+                for (Car car : group.getValue()) {
+                    bucket.remove(car);
+                }
+
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    // This method groups the cars of a type by make id.
+    private static Map<Integer, List<Car>> groupByMake(Car[] batch, char type) {
+
+        Map<Integer, List<Car>> groups = new HashMap<>();
+
+        for (Car car : batch) {
+            if (car.getType() == type) {
+                groups.computeIfAbsent(car.getMakeId(), makeId -> new ArrayList<>()).add(car);
+            }
+        }
+
+        return groups;
+    }
+
+    // This method counts each item of a bulk change as one call of an operation. Bulk items are not timed.
+    private static void countBulk(VendingMachineMetrics metrics, VendingMachineMetrics.Operation operation,
+            BulkResult result) {
+
+        if (metrics != null) {
+            for (int i = 0; i < result.size(); i++) {
+                metrics.end(operation, VendingMachineMetrics.NOT_TIMED, result.isSuccess(i));
+            }
+        }
+    }
+
+    // This method returns a floor with a free space according to the slot policy, or 0 if every floor is
+    // full. In concurrent mode the bitmaps are read without locking, so the caller checks the floor again
+    // once it holds the lock.
+    //
+    // The lowest floor with a space is the first bit set in floorsWithSpace. The floor with the most free
+    // spaces is the lowest floor in the highest bucket that has one, found by walking down from
+    // mostFreeHint. An empty bucket lowers the hint as it is passed, and a sale raises it at most one bucket
+    // above where its floor was, so the walk passes O(1) buckets amortised. Each bucket is read a word per
+    // 64 floors.
+    private int chooseFloor() {
+
+        if (slotPolicy == SlotPolicy.MOST_FREE_FLOOR) {
+            for (int free = mostFreeHint.get(); free > 0; free--) {
+                int floor = firstFloor(floorsByFreeCount, (free - 1) * floorWords);
+
+                if (floor == 0 && mostFreeHint.compareAndSet(free, free - 1)) {
+                    // A sale may have moved a floor into the bucket just before the hint was lowered.
+                    floor = firstFloor(floorsByFreeCount, (free - 1) * floorWords);
+
+                    if (floor > 0) {
+                        mostFreeHint.accumulateAndGet(free, Math::max);
+                    }
+                }
+
+                if (floor > 0) {
+                    return floor;
+                }
+            }
+        }
+
+        // The walk can miss a floor that changed bucket meanwhile, so an empty result is checked here.
+        return firstFloor(floorsWithSpace, 0);
+    }
+
+    // This method returns the lowest floor whose bit is set in the bitmap starting at a word, or 0.
+    private int firstFloor(AtomicLongArray bitmap, int first) {
+
+        for (int word = 0; word < floorWords; word++) {
+            long bits = bitmap.get(first + word);
+
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits) + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    // This method moves a floor from the bucket for its old free count to the bucket for its new one, and
+    // into or out of floorsWithSpace. The new bit is set before the old one is cleared, and the hint is
+    // raised in between, so a floor with a space is always in a bucket at or below the hint.
+    private void moveFloor(int floor, int oldFree, int newFree) {
+
+        if (newFree > 0) {
+            setFloorBit(floorsByFreeCount, (newFree - 1) * floorWords, floor);
+        }
+
+        else {
+            clearFloorBit(floorsWithSpace, 0, floor);
+        }
+
+        if (newFree > mostFreeHint.get()) {
+            mostFreeHint.accumulateAndGet(newFree, Math::max);
+        }
+
+        if (oldFree > 0) {
+            clearFloorBit(floorsByFreeCount, (oldFree - 1) * floorWords, floor);
+        }
+
+        else {
+            setFloorBit(floorsWithSpace, 0, floor);
+        }
+    }
+
+    private void setFloorBit(AtomicLongArray bitmap, int first, int floor) {
+        bitmap.getAndAccumulate(first + ((floor - 1) >>> 6), 1L << (floor - 1), (bits, bit) -> bits | bit);
+    }
+
+    private void clearFloorBit(AtomicLongArray bitmap, int first, int floor) {
+        bitmap.getAndAccumulate(first + ((floor - 1) >>> 6), 1L << (floor - 1), (bits, bit) -> bits & ~bit);
+    }
+
+    // This method returns the lowest free space on a floor, or 0 if the floor is full. The floor must be
+    // locked.
+    private int firstFreeSpace(int floor) {
+
+        int first = (floor - 1) * wordsPerFloor;
+
+        for (int word = 0; word < wordsPerFloor; word++) {
+            long free = ~occupiedSpaces[first + word];
+
+            if (free != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(free) + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    // This method sets the occupancy bit of a space, counts the car on its floor and moves the floor down
+    // a bucket.
+    private void markOccupied(int floor, int space) {
+
+        occupiedSpaces[(floor - 1) * wordsPerFloor + ((space - 1) >>> 6)] |= 1L << (space - 1);
+        int free = spaces - ++carsPerFloor[floor - 1];
+
+        moveFloor(floor, free + 1, free);
     }
 
-    // This method returns a sorted linked list by price or by year or by .
-    private List<Car> getSorted(List<Car> cars, String condition) {
+    // This method clears the occupancy bit of a space, stops counting the car on its floor and moves the
+    // floor up a bucket.
+    private void markFree(int floor, int space) {
+
+        occupiedSpaces[(floor - 1) * wordsPerFloor + ((space - 1) >>> 6)] &= ~(1L << (space - 1));
+        int free = spaces - --carsPerFloor[floor - 1];
+
+        moveFloor(floor, free - 1, free);
+    }
+
+    // This method returns the sorted index for price, year or alphabetical order. The indexes are kept
+    // up to date as cars are added and sold, so nothing is sorted here.
+    private Collection<Car> getSorted(String condition) {
 
         if (condition.equalsIgnoreCase("price")) {
-            cars.sort(Comparator.comparingDouble(Car::getPrice));
-            return cars;
+            return carsByPrice;
         }
         
         if (condition.equalsIgnoreCase("year")){
-            cars.sort(Comparator.comparingInt(Car::getYear));
-            return cars;
+            return carsByYear;
         }
 
         if (condition.equalsIgnoreCase("alphabetical")) {
-            cars.sort(Comparator.comparing(Car::getMake).thenComparing(Car::getModel));
-            return cars;
+            return carsByName;
         }
 
-        return null;
+        return Collections.emptyList();
     }
 
-    // This method prints out a list of cars.
-    private void printCarList(List<Car> cars) {
-        
-        if (cars.size() == 0) {
+    // This method sorts cars and builds a sorted index from them, for a machine that is not concurrent. The
+    // TreeSet constructor that takes a SortedSet builds the index in linear time.
+    private NavigableSet<Car> buildIndex(Car[] unsorted, Comparator<Car> comparator) {
+
+        Car[] sorted = unsorted.clone();
+        Arrays.sort(sorted, comparator);
+
+        return new TreeSet<>(new SortedCarArray(sorted, comparator));
+    }
+
+    // This method returns up to k cars from an index iterator.
+    private List<Car> firstK(Iterator<Car> iterator, int k) {
+
+        List<Car> firstCars = new ArrayList<>();
+
+        while (firstCars.size() < k && iterator.hasNext()) {
+            firstCars.add(iterator.next());
+        }
+
+        return firstCars;
+    }
+
+    // This method returns a placeholder car for the bounds of a range query. Its position sorts it before
+    // (low) or after (high) every real car with the same year and price. It has no make or model, so the
+    // dictionaries are neither locked nor given an empty name.
+    private static Car bound(int year, double price, boolean low) {
+
+        Car car = new BasicCar(year, price);
+        int position = low ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+        car.setPosition(position, position);
+        return car;
+    }
+
+    // This method prints out a list of cars with their positions in the vending machine. The listing goes
+    // through one buffered renderer rather than a console call per car.
+    private void printCarList(Collection<Car> cars) {
+
+        if (cars.isEmpty()) {
             return;
         }
 
+        InventoryRenderer renderer = newRenderer(cars.size());
+
         for (Car car : cars) {
-            printCar(car);
+            renderer.writeCar(car);
         }
+
+        renderer.flush();
+    }
+
+    // This method returns a renderer for a listing of a number of cars that writes to System.out, which may
+    // have been replaced since the last listing. The buffer is sized for the listing, up to the usual
+    // 64 KiB, and is dropped with the renderer once the listing has been printed.
+    private static InventoryRenderer newRenderer(int count) {
+        return new InventoryRenderer(System.out, Math.min(count, RENDER_LINES) * RENDER_LINE_SIZE);
+    }
+
+    // This method returns true if the space is within the bounds of the vending machine.
+    private boolean isValidSpace(int floor, int space) {
+        return 0 < floor && floor <= floors && 0 < space && space <= spaces;
     }
 
-    // This method prints the information about the car and its position in the vending machine.
-    private void printCar(Car car) {
-        List<Integer> pos = getCarPos(car);
-        System.out.println(car.toString() + " (" + pos.get(0) + ", " + pos.get(1) + ")");
+    // This method returns true if the space is not occupied. The space must be valid.
+    private boolean isEmptySpace(int floor, int space) {
+        return carsByPos[slot(floor, space)] == null;
     }
 
-    // This method gets the location of a car.
-    private List<Integer> getCarPos(Car car) {
+    // This method packs a valid (floor, space) pair into an index of the carsByPos array. Floors
+    // and spaces both start at 1.
+    private int slot(int floor, int space) {
+        return (floor - 1) * spaces + (space - 1);
+    }
 
-        for (Map.Entry<List<Integer>, Car> entry : carsByPos.entrySet()) {
-            if (car.equals(entry.getValue())) {
-                return entry.getKey();
+    // This method waits until a logged change is as durable as the log's sync policy promises. A sequence
+    // of 0 means nothing was logged.
+    private static void commitLog(MutationLog log, long sequence) {
+        if (sequence > 0) {
+            log.commit(sequence);
+        }
+    }
+
+    // This method starts timing an operation if metrics are attached.
+    private static long startTimer(VendingMachineMetrics metrics, VendingMachineMetrics.Operation operation) {
+        return metrics == null ? VendingMachineMetrics.NOT_TIMED : metrics.start(operation);
+    }
+
+    // This method counts an operation, and records its duration if it was timed, if metrics are attached.
+    private static void endTimer(VendingMachineMetrics metrics, VendingMachineMetrics.Operation operation, long start,
+            boolean succeeded) {
+
+        if (metrics != null) {
+            metrics.end(operation, start, succeeded);
+        }
+    }
+
+    // This method publishes an event if an event bus is attached.
+    private void publish(InventoryEventBus.EventType type, int floor, int space, Car car) {
+
+        InventoryEventBus bus = eventBus;
+
+        if (bus != null) {
+            bus.publish(type, floor, space, car);
+        }
+    }
+
+    // This method waits for a place in a car wash, which publishes to this vending machine's event bus
+    // once the car is washed. It returns false if the car wash closed in the meantime or the wait was
+    // interrupted, and prints why if report is true.
+    private boolean submitToCarWash(CarWash wash, Car car, int floor, int space, boolean report) {
+
+        try {
+            if (wash.submit(car, floor, space, eventBus)) {
+                return true;
+            }
+
+            if (report) {
+                printWashClosed(car);
             }
         }
 
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            if (report) {
+                System.out.println("Interrupted while waiting for the car wash: " + car.toString());
+            }
+        }
+
+        return false;
+    }
+
+    // This method reports a car that was not queued because the attached car wash is closed.
+    private static void printWashClosed(Car car) {
+        System.out.println("The car wash is closed: " + car.toString());
+    }
+
+    // This method locks the stripe that guards a floor when the vending machine is concurrent.
+    private void lockFloor(int floor) {
+        if (floorLocks != null) {
+            floorLocks[Math.floorMod(floor, floorLocks.length)].lock();
+        }
+    }
+
+    private void unlockFloor(int floor) {
+        if (floorLocks != null) {
+            floorLocks[Math.floorMod(floor, floorLocks.length)].unlock();
+        }
+    }
+
+    // This method returns the make index for basic ('B') or premium ('P') cars, or null for any other type.
+    private Map<Integer, Set<Car>> getCarsByManufacturer(char type) {
+
+        if (type == 'B') {
+            return basicCarsByManufacturer;
+        }
+
+        if (type == 'P') {
+            return premiumCarsByManufacturer;
+        }
+
         return null;
     }
 
-    // This method returns true if the space is within the bounds of the vending machine.
-    private boolean isValidSpace(int floor, int space) {
-        return 0 < floor && floor <= floors && 0 < spaces && space < spaces;
+    // This method adds a car to the bucket for its make, creating the bucket for the first car of that make.
+    // The update is atomic per make, so a bucket cannot be dropped while another floor is adding to it.
+    private void addToBucket(Map<Integer, Set<Car>> carsByMake, Car car) {
+
+        carsByMake.compute(car.getMakeId(), (makeId, bucket) -> {
+
+            if (bucket == null) {
+                bucket = newBucket();
+            }
+
+            bucket.add(car);
+            return bucket;
+        });
     }
 
-    // This method returns true if the space is not occupied.
-    private boolean isEmptySpace(int floor, int space) {
-        List<Integer> pos = asList(floor, space);
-        return !carsByPos.keySet().contains(pos);
+    // This method returns an empty make bucket, which keeps its cars in the order they were added, or by
+    // position in concurrent mode.
+    private Set<Car> newBucket() {
+        return isConcurrent() ? new ConcurrentSkipListSet<>(BY_POSITION) : new LinkedHashSet<>();
     }
 
-    // This method returns true if the vending machine has at least one car with a given make.
-    private boolean hasManufacturer(String make) {
-        return carsByManufacturer.keySet().contains(make);
+    // This method removes a car from the bucket for its make and drops the bucket once it is empty.
+    private void removeFromBucket(Map<Integer, Set<Car>> carsByMake, Car car) {
+
+        carsByMake.computeIfPresent(car.getMakeId(), (makeId, bucket) -> {
+            bucket.remove(car);
+            return bucket.isEmpty() ? null : bucket;
+        });
     }
 
-    // This helper method allows us to instantiate and initialize values of an ArrayList in the same line.
-    private List<Integer> asList(int x, int y) {
-        List<Integer> list = new ArrayList<Integer>();
-        list.add(x);
-        list.add(y);
-        return list;
+    // This class presents an already sorted array as a read-only SortedSet, so a sorted index can be built
+    // from it by the TreeSet constructor without comparing the cars again. Views from subSet, headSet and
+    // tailSet share the array and are bounded by elements, like those of a TreeSet.
+    private static class SortedCarArray extends AbstractSet<Car> implements SortedSet<Car> {
+
+        private final Car[] sorted;
+        private final Comparator<Car> comparator;
+        private final Car low;
+        private final Car high;
+        private final int from;
+        private final int to;
+
+        SortedCarArray(Car[] sorted, Comparator<Car> comparator) {
+            this(sorted, comparator, null, null);
+        }
+
+        // This constructor makes a view of the cars from low, inclusive, to high, exclusive. A null bound
+        // leaves that end open.
+        private SortedCarArray(Car[] sorted, Comparator<Car> comparator, Car low, Car high) {
+            this.sorted = sorted;
+            this.comparator = comparator;
+            this.low = low;
+            this.high = high;
+            this.from = low == null ? 0 : lowerBound(low);
+            this.to = high == null ? sorted.length : Math.max(from, lowerBound(high));
+        }
+
+        @Override
+        public Iterator<Car> iterator() {
+            return Arrays.asList(sorted).subList(from, to).iterator();
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+
+            if (!(o instanceof Car)) {
+                return false;
+            }
+
+            Car car = (Car) o;
+            int i = lowerBound(car);
+
+            return i >= from && i < to && comparator.compare(sorted[i], car) == 0;
+        }
+
+        @Override
+        public Comparator<? super Car> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public Car first() {
+
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+
+            return sorted[from];
+        }
+
+        @Override
+        public Car last() {
+
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+
+            return sorted[to - 1];
+        }
+
+        @Override
+        public SortedSet<Car> subSet(Car fromElement, Car toElement) {
+
+            if (comparator.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("The first car sorts after the second.");
+            }
+
+            return new SortedCarArray(sorted, comparator, checkInRange(fromElement), checkInRange(toElement));
+        }
+
+        @Override
+        public SortedSet<Car> headSet(Car toElement) {
+            return new SortedCarArray(sorted, comparator, low, checkInRange(toElement));
+        }
+
+        @Override
+        public SortedSet<Car> tailSet(Car fromElement) {
+            return new SortedCarArray(sorted, comparator, checkInRange(fromElement), high);
+        }
+
+        // This method returns the car if it lies within this view's bounds, and throws otherwise, as the
+        // SortedSet contract requires.
+        private Car checkInRange(Car car) {
+
+            if ((low != null && comparator.compare(car, low) < 0)
+                || (high != null && comparator.compare(car, high) > 0)) {
+                throw new IllegalArgumentException("The car lies outside the range of this set.");
+            }
+
+            return car;
+        }
+
+        // This method returns the index of the first car in the array that does not sort before the given car.
+        private int lowerBound(Car car) {
+
+            int lo = 0;
+            int hi = sorted.length;
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if (comparator.compare(sorted[mid], car) < 0) {
+                    lo = mid + 1;
+                }
+
+                else {
+                    hi = mid;
+                }
+            }
+
+            return lo;
+        }
     }
 }
-
@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// This program times the hot paths of VendingMachine for several inventory sizes and lot shapes. Each
+// benchmark is warmed up before it is measured, and console output from the vending machine is thrown
+// away while it runs. Arguments are inventory sizes followed by lot shapes, e.g.
+// java -Xmx8g VendingMachineBenchmark 1000 100000 10000000 square wide tall
+public class VendingMachineBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final String[] MAKES = { "Toyota", "Honda", "Ford", "Chevrolet", "Tesla", "BMW" };
+
+    private static PrintStream console = System.out;
+    private static PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    public static void main(String[] args) throws IOException {
+
+        int[] sizes = { 1_000, 100_000 };
+        String[] shapes = { "square", "wide", "tall" };
+
+        if (args.length > 0) {
+            sizes = parseSizes(args);
+            shapes = parseShapes(args);
+        }
+
+        console.printf("%-22s %-8s %-14s %14s %14s%n", "benchmark", "cars", "lot", "ns/op", "ops/s");
+
+        for (int size : sizes) {
+            for (String shape : shapes) {
+                run(size, shape);
+            }
+        }
+    }
+
+    // This method runs every benchmark for one inventory size and lot shape.
+    private static void run(int size, String shape) throws IOException {
+
+        int[] lot = lotShape(size, shape);
+        int floors = lot[0];
+        int spaces = lot[1];
+        String label = floors + "x" + spaces;
+        int[][] positions = shuffledPositions(size, floors, spaces);
+        Car[] cars = makeCars(size);
+        int sample = Math.min(size, 100_000);
+
+        measure("addCar", size, label, size, () -> fill(new VendingMachine(floors, spaces), cars, positions));
+
+        measure("addCar(any space)", size, label, size, () -> {
+            VendingMachine lot2 = new VendingMachine(floors, spaces);
+
+            for (Car car : cars) {
+                lot2.addCar(copy(car));
+            }
+        });
+
+        int[] carFloors = new int[size];
+        int[] carSpaces = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            carFloors[i] = positions[i][0];
+            carSpaces[i] = positions[i][1];
+        }
+
+        measure("addCars", size, label, size, () -> {
+            Car[] copies = new Car[size];
+
+            for (int i = 0; i < size; i++) {
+                copies[i] = copy(cars[i]);
+            }
+
+            new VendingMachine(floors, spaces).addCars(copies, carFloors, carSpaces);
+        });
+
+        VendingMachine vendingMachine = new VendingMachine(floors, spaces);
+        fill(vendingMachine, cars, positions);
+
+        measure("peekCar", size, label, sample, () -> {
+            for (int i = 0; i < sample; i++) {
+                vendingMachine.peekCar(positions[i][0], positions[i][1]);
+            }
+        });
+
+        measure("testDrive", size, label, sample, () -> {
+            for (int i = 0; i < sample; i++) {
+                vendingMachine.testDrive(positions[i][0], positions[i][1]);
+            }
+        });
+
+        measure("printSortedInventory", size, label, 1, () -> vendingMachine.printSortedInventory("Price"));
+        measure("printCarsByMakeType", size, label, 1, () -> vendingMachine.printCarsByMakeType("Toyota", "P"));
+
+        measure("processCarWashQueue", size, label, sample, () -> {
+            for (int i = 0; i < sample; i++) {
+                vendingMachine.addCarToWash(positions[i][0], positions[i][1]);
+            }
+
+            vendingMachine.processCarWashQueue();
+        });
+
+        Supplier<VendingMachine> filledLot = () -> {
+            VendingMachine lot2 = new VendingMachine(floors, spaces);
+            fill(lot2, cars, positions);
+            return lot2;
+        };
+
+        measure("sellCar", size, label, sample, filledLot, lot2 -> {
+            for (int i = 0; i < sample; i++) {
+                lot2.sellCar(positions[i][0], positions[i][1]);
+            }
+        });
+
+        int[] sampleFloors = Arrays.copyOf(carFloors, sample);
+        int[] sampleSpaces = Arrays.copyOf(carSpaces, sample);
+
+        measure("sellCars", size, label, sample, filledLot, lot2 -> lot2.sellCars(sampleFloors, sampleSpaces));
+
+        File feed = File.createTempFile("cars", ".txt");
+        feed.deleteOnExit();
+        LoaderBenchmark.writeFeed(feed, size);
+
+        measure("loadCarData", size, "1000-wide", size,
+            () -> Application.loadCarData(new VendingMachine(size / 1000 + 1, 1000), feed.getPath()));
+
+        feed.delete();
+    }
+
+    // This method warms up and then times an operation. It prints the mean time per operation over the
+    // measured rounds, where one round performs the given number of operations.
+    private static void measure(String name, int size, String lot, int operations, Runnable round) {
+        measure(name, size, lot, operations, () -> null, ignored -> round.run());
+    }
+
+    // This method is measure() with an untimed setup before every round, such as filling a lot that the
+    // round then sells from. Only the round itself is timed.
+    private static <T> void measure(String name, int size, String lot, int operations, Supplier<T> setup,
+            Consumer<T> round) {
+
+        System.setOut(discard);
+
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                round.accept(setup.get());
+            }
+
+            long nanos = 0;
+
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                T state = setup.get();
+                long start = System.nanoTime();
+
+                round.accept(state);
+                nanos += System.nanoTime() - start;
+            }
+
+            double nanosPerOp = nanos / (double) MEASURED_ROUNDS / operations;
+            console.printf("%-22s %-8d %-14s %,14.1f %,14.0f%n", name, size, lot, nanosPerOp, 1e9 / nanosPerOp);
+        }
+
+        finally {
+            System.setOut(console);
+        }
+    }
+
+    // This method adds the cars to the vending machine at the given positions.
+    private static void fill(VendingMachine vendingMachine, Car[] cars, int[][] positions) {
+        for (int i = 0; i < cars.length; i++) {
+            vendingMachine.addCar(copy(cars[i]), positions[i][0], positions[i][1]);
+        }
+    }
+
+    // This method returns a fresh car with the same details, since a car can only be in one machine.
+    private static Car copy(Car car) {
+
+        if (car.getType() == 'P') {
+            return new PremiumCar(car.getYear(), car.getPrice(), car.getMake(), car.getModel());
+        }
+
+        return new BasicCar(car.getYear(), car.getPrice(), car.getMake(), car.getModel());
+    }
+
+    // This method returns the number of floors and spaces for a lot with room for size cars.
+    private static int[] lotShape(int size, String shape) {
+
+        if (shape.equals("wide")) {
+            return new int[] { 10, (size + 9) / 10 };
+        }
+
+        if (shape.equals("tall")) {
+            return new int[] { (size + 9) / 10, 10 };
+        }
+
+        int side = (int) Math.ceil(Math.sqrt(size));
+        return new int[] { side, side };
+    }
+
+    // This method returns the first size positions of the lot in a random order.
+    private static int[][] shuffledPositions(int size, int floors, int spaces) {
+
+        int[][] positions = new int[size][];
+        Random random = new Random(42);
+
+        for (int i = 0; i < size; i++) {
+            positions[i] = new int[] { i / spaces + 1, i % spaces + 1 };
+        }
+
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int[] temp = positions[i];
+            positions[i] = positions[j];
+            positions[j] = temp;
+        }
+
+        return positions;
+    }
+
+    private static Car[] makeCars(int size) {
+
+        Car[] cars = new Car[size];
+        Random random = new Random(7);
+
+        for (int i = 0; i < size; i++) {
+            int year = 1990 + random.nextInt(35);
+            double price = 5000 + random.nextInt(90000);
+            String make = MAKES[random.nextInt(MAKES.length)];
+
+            cars[i] = random.nextInt(3) == 0 ? new PremiumCar(year, price, make, "Model") : new BasicCar(year, price, make, "Model");
+        }
+
+        return cars;
+    }
+
+    private static int[] parseSizes(String[] args) {
+        return Arrays.stream(args).filter(arg -> arg.matches("\\d+")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static String[] parseShapes(String[] args) {
+
+        String[] shapes = Arrays.stream(args).filter(arg -> !arg.matches("\\d+")).toArray(String[]::new);
+        return shapes.length > 0 ? shapes : new String[] { "square" };
+    }
+}
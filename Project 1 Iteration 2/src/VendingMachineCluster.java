@@ -0,0 +1,429 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+// This class makes several vending machines look like one tall tower. Each vending machine is a shard
+// that holds a range of floors: the first shard holds floors 1 to its floor count, the next shard the
+// floors after that, and so on. A shard can be a separate site or one slice of a large tower.
+//
+// Changes to one car go straight to the shard that holds its floor. Queries across the whole inventory
+// run on every shard at once, one pool thread per shard, and the sorted results of the shards are then
+// combined with a k-way merge, so nothing is sorted again. Cars keep the position they have inside their
+// shard; getFloor(car) and the listings translate it to the floor of the whole tower. Use concurrent
+// shards if the cluster is changed from several threads.
+public class VendingMachineCluster implements Closeable {
+
+    private final VendingMachine[] shards;
+    private final int[] firstFloors;
+    private final ExecutorService pool;
+
+    // The constructor takes the shards in floor order.
+    public VendingMachineCluster(VendingMachine... shards) {
+
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("A cluster needs at least one vending machine.");
+        }
+
+        this.shards = shards.clone();
+        this.firstFloors = new int[shards.length];
+
+        int floor = 1;
+
+        for (int i = 0; i < shards.length; i++) {
+            firstFloors[i] = floor;
+            floor += shards[i].getFloors();
+        }
+
+        this.pool = Executors.newFixedThreadPool(shards.length, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("cluster-shard-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // This method splits a tower of floors and spaces into shardCount shards of nearly equal floor ranges.
+    public static VendingMachineCluster split(int floors, int spaces, int shardCount, boolean concurrent) {
+
+        shardCount = Math.max(1, Math.min(shardCount, floors));
+        VendingMachine[] shards = new VendingMachine[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            int shardFloors = floors / shardCount + (i < floors % shardCount ? 1 : 0);
+            shards[i] = new VendingMachine(shardFloors, spaces, concurrent);
+        }
+
+        return new VendingMachineCluster(shards);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public VendingMachine getShard(int shard) {
+        return shards[shard];
+    }
+
+    // This method returns the total number of floors across every shard.
+    public int getFloors() {
+        int last = shards.length - 1;
+        return firstFloors[last] + shards[last].getFloors() - 1;
+    }
+
+    // This method adds a car if the space isn't occupied and within the bounds of its shard. It returns true
+    // if the car was added.
+    public boolean addCar(Car car, int floor, int space) {
+
+        int shard = shardOf(floor);
+        return shard >= 0 && shards[shard].addCar(car, localFloor(shard, floor), space);
+    }
+
+    // This method sells a car given a location and returns it, or null if there was no car to sell, like
+    // VendingMachine.sellCar.
+    public Car sellCar(int floor, int space) {
+
+        int shard = shardOf(floor);
+
+        if (shard < 0) {
+            printInvalidSpace(floor, space);
+            return null;
+        }
+
+        return shards[shard].sellCar(localFloor(shard, floor), space);
+    }
+
+    // This method prints a message if a car is found at the given location.
+    public void testDrive(int floor, int space) {
+
+        int shard = shardOf(floor);
+
+        if (shard < 0) {
+            printInvalidSpace(floor, space);
+            return;
+        }
+
+        shards[shard].testDrive(localFloor(shard, floor), space);
+    }
+
+    // This method adds a car to the wash queue of its shard given a location and returns it, or null if it
+    // was not queued, like VendingMachine.addCarToWash.
+    public Car addCarToWash(int floor, int space) {
+
+        int shard = shardOf(floor);
+
+        if (shard < 0) {
+            printInvalidSpace(floor, space);
+            return null;
+        }
+
+        return shards[shard].addCarToWash(localFloor(shard, floor), space);
+    }
+
+    // This method processes the wash queue of every shard in floor order.
+    public void processCarWashQueue() {
+        for (VendingMachine shard : shards) {
+            shard.processCarWashQueue();
+        }
+    }
+
+    // This method returns the car at a given location without printing anything, or null.
+    public Car peekCar(int floor, int space) {
+
+        int shard = shardOf(floor);
+        return shard < 0 ? null : shards[shard].peekCar(localFloor(shard, floor), space);
+    }
+
+    // This method returns the floor of a car across the whole cluster, or 0 if no shard holds the car.
+    public int getFloor(Car car) {
+
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i].peekCar(car.getFloor(), car.getSpace()) == car) {
+                return firstFloors[i] + car.getFloor() - 1;
+            }
+        }
+
+        return 0;
+    }
+
+    // This method returns the total price of every car sold by every shard.
+    public double getBankroll() {
+
+        long revenueCents = 0;
+
+        for (VendingMachine shard : shards) {
+            revenueCents += shard.getStats().getRevenueCents();
+        }
+
+        return revenueCents / 100.0;
+    }
+
+    // This method returns the number of cars in every shard.
+    public long getCarCount() {
+
+        long count = 0;
+
+        for (VendingMachine shard : shards) {
+            count += shard.getStats().getCarCount();
+        }
+
+        return count;
+    }
+
+    // This method prints out the inventory of every shard in floor order.
+    public void printInventory() {
+
+        InventoryRenderer renderer = new InventoryRenderer(System.out);
+
+        for (int i = 0; i < shards.length; i++) {
+            for (Car car : shards[i].getInventory()) {
+                renderer.writeCar(car, firstFloors[i] + car.getFloor() - 1, car.getSpace());
+            }
+        }
+
+        renderer.flush();
+    }
+
+    // This method prints out the whole inventory sorted by price, by year or alphabetically. Each shard
+    // copies its sorted index at the same time, and the copies are merged as they are printed.
+    public void printSortedInventory(String condition) {
+
+        Comparator<Car> order = sortOrder(condition);
+
+        if (order == null) {
+            return;
+        }
+
+        List<List<Car>> sortedShards = scatter(shard -> new ArrayList<>(shard.getSortedInventory(condition)));
+        InventoryRenderer renderer = new InventoryRenderer(System.out);
+        Merge merge = new Merge(sortedShards, order, false);
+
+        while (merge.hasNext()) {
+            int shard = merge.nextShard();
+            Car car = merge.next();
+            renderer.writeCar(car, firstFloors[shard] + car.getFloor() - 1, car.getSpace());
+        }
+
+        renderer.flush();
+    }
+
+    // This method prints the cars in every shard that match the make and type, in floor order.
+    public void printCarsByMakeType(String make, String type) {
+
+        List<List<Car>> matches = scatter(shard -> byPosition(shard.getCarsByMakeType(make, type)));
+        InventoryRenderer renderer = new InventoryRenderer(System.out);
+        boolean matched = false;
+
+        for (int i = 0; i < matches.size(); i++) {
+            for (Car car : matches.get(i)) {
+                renderer.writeCar(car, firstFloors[i] + car.getFloor() - 1, car.getSpace());
+                matched = true;
+            }
+        }
+
+        if (!matched) {
+            renderer.writeLine("No Cars Matched the Description.");
+        }
+
+        renderer.flush();
+    }
+
+    // This method returns the cars of a given make and type from every shard, in floor order.
+    public List<Car> getCarsByMakeType(String make, String type) {
+
+        List<List<Car>> matches = scatter(shard -> byPosition(shard.getCarsByMakeType(make, type)));
+        List<Car> matchedCars = new ArrayList<>();
+
+        for (List<Car> shardMatches : matches) {
+            matchedCars.addAll(shardMatches);
+        }
+
+        return matchedCars;
+    }
+
+    // This method returns the cars priced from minPrice to maxPrice inclusive, cheapest first.
+    public List<Car> getCarsByPrice(double minPrice, double maxPrice) {
+        return merge(scatter(shard -> shard.getCarsByPrice(minPrice, maxPrice)), sortOrder("price"), false, Integer.MAX_VALUE);
+    }
+
+    // This method returns the cars built from minYear to maxYear inclusive, oldest first.
+    public List<Car> getCarsByYear(int minYear, int maxYear) {
+        return merge(scatter(shard -> shard.getCarsByYear(minYear, maxYear)), sortOrder("year"), false, Integer.MAX_VALUE);
+    }
+
+    // This method returns the k cheapest cars, cheapest first. Each shard returns its own k cheapest, so
+    // the merge looks at no more than k cars per shard.
+    public List<Car> getCheapest(int k) {
+        return merge(scatter(shard -> shard.getCheapest(k)), sortOrder("price"), false, k);
+    }
+
+    // This method returns the k newest cars, newest first.
+    public List<Car> getNewest(int k) {
+        return merge(scatter(shard -> shard.getNewest(k)), sortOrder("year"), true, k);
+    }
+
+    // This method returns the k cheapest cars that cost at most maxPrice and were built in minYear or
+    // later, cheapest first.
+    public List<Car> getCheapest(int k, double maxPrice, int minYear) {
+        return merge(scatter(shard -> shard.getCheapest(k, maxPrice, minYear)), sortOrder("price"), false, k);
+    }
+
+    // This method stops the query threads.
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // This method runs a query on every shard at once and returns the results in shard order.
+    private List<List<Car>> scatter(Function<VendingMachine, List<Car>> query) {
+
+        List<CompletableFuture<List<Car>>> futures = new ArrayList<>();
+
+        for (VendingMachine shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), pool));
+        }
+
+        List<List<Car>> results = new ArrayList<>();
+
+        for (CompletableFuture<List<Car>> future : futures) {
+            results.add(future.join());
+        }
+
+        return results;
+    }
+
+    // This method returns a copy of cars sorted by position. Shards are in floor order, so the sorted
+    // lists of the shards follow each other in floor order across the cluster.
+    private static List<Car> byPosition(Collection<Car> cars) {
+
+        List<Car> sortedCars = new ArrayList<>(cars);
+        sortedCars.sort(Comparator.comparingInt(Car::getFloor).thenComparingInt(Car::getSpace));
+        return sortedCars;
+    }
+
+    // This method merges the sorted results of the shards into one sorted list of up to limit cars.
+    private List<Car> merge(List<List<Car>> sortedShards, Comparator<Car> order, boolean descending, int limit) {
+
+        List<Car> mergedCars = new ArrayList<>();
+        Merge merge = new Merge(sortedShards, order, descending);
+
+        while (mergedCars.size() < limit && merge.hasNext()) {
+            merge.nextShard();
+            mergedCars.add(merge.next());
+        }
+
+        return mergedCars;
+    }
+
+    // This method returns the order of a sorted listing without the position that breaks ties. Ties are
+    // broken by the floor across the cluster instead, in Merge. It returns null for an unknown condition.
+    private static Comparator<Car> sortOrder(String condition) {
+
+        if (condition.equalsIgnoreCase("price")) {
+            return Comparator.comparingDouble(Car::getPrice);
+        }
+
+        if (condition.equalsIgnoreCase("year")) {
+            return Comparator.comparingInt(Car::getYear);
+        }
+
+        if (condition.equalsIgnoreCase("alphabetical")) {
+            return Comparator.comparing(Car::getMake).thenComparing(Car::getModel);
+        }
+
+        return null;
+    }
+
+    // This method returns the shard that holds a floor, or -1 if no shard does.
+    private int shardOf(int floor) {
+
+        if (floor < 1 || floor > getFloors()) {
+            return -1;
+        }
+
+        int index = Arrays.binarySearch(firstFloors, floor);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int localFloor(int shard, int floor) {
+        return floor - firstFloors[shard] + 1;
+    }
+
+    private static void printInvalidSpace(int floor, int space) {
+        System.out.println("Invalid space at (" + floor + ", " + space + ").");
+    }
+
+    // This class is a k-way merge of sorted lists, one per shard. A heap holds the next car of every list
+    // that still has cars. Two cars that are equal in the order are taken by their floor and space across
+    // the cluster, the same tie-break each shard uses, so the merge agrees with how the shards are sorted.
+    // A descending merge reverses both the order and the tie-break, like a descending iterator.
+    private class Merge {
+
+        private final List<List<Car>> lists;
+        private final int[] next;
+        private final PriorityQueue<Integer> heap;
+        private int shard = -1;
+
+        Merge(List<List<Car>> lists, Comparator<Car> order, boolean descending) {
+
+            this.lists = lists;
+            this.next = new int[lists.size()];
+
+            Comparator<Integer> byHead = (a, b) -> {
+                Car carA = head(a);
+                Car carB = head(b);
+                int compared = order.compare(carA, carB);
+
+                if (compared == 0) {
+                    long positionA = (long) (firstFloors[a] + carA.getFloor()) << 32 | carA.getSpace();
+                    long positionB = (long) (firstFloors[b] + carB.getFloor()) << 32 | carB.getSpace();
+                    compared = Long.compare(positionA, positionB);
+                }
+
+                return descending ? -compared : compared;
+            };
+
+            this.heap = new PriorityQueue<>(Math.max(1, lists.size()), byHead);
+
+            for (int i = 0; i < lists.size(); i++) {
+                if (!lists.get(i).isEmpty()) {
+                    heap.add(i);
+                }
+            }
+        }
+
+        boolean hasNext() {
+            return !heap.isEmpty();
+        }
+
+        // This method picks the shard that holds the next car and returns it.
+        int nextShard() {
+            shard = heap.poll();
+            return shard;
+        }
+
+        // This method returns the next car from the shard picked by nextShard().
+        Car next() {
+
+            Car car = head(shard);
+            next[shard]++;
+
+            if (next[shard] < lists.get(shard).size()) {
+                heap.add(shard);
+            }
+
+            return car;
+        }
+
+        private Car head(int list) {
+            return lists.get(list).get(next[list]);
+        }
+    }
+}
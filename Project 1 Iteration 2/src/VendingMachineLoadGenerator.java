@@ -0,0 +1,119 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// This program puts load on a VendingMachineServer and reports requests per second and latency. It starts
+// its own server on a free port with a full vending machine unless a port is given, then keeps the given
+// number of requests in flight for the given time. Most requests look up a car; the rest sell a car or
+// park a new one. The metrics of its own server are printed at the end. Arguments are the concurrent
+// clients, the seconds to run and an optional port, e.g.
+// java VendingMachineLoadGenerator 1000 10
+public class VendingMachineLoadGenerator {
+
+    private static final int FLOORS = 100;
+    private static final int SPACES = 100;
+
+    public static void main(String[] args) throws Exception {
+
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        VendingMachineServer server = null;
+        int port;
+
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        }
+
+        else {
+            VendingMachine vendingMachine = new VendingMachine(FLOORS, SPACES, true);
+
+            for (int i = 0; i < FLOORS * SPACES; i++) {
+                vendingMachine.addCar(new BasicCar(1990 + i % 35, 5000 + i % 90000, "Toyota", "Camry"));
+            }
+
+            vendingMachine.setMetrics(new VendingMachineMetrics());
+            server = new VendingMachineServer(vendingMachine, 0);
+            server.start();
+            port = server.getPort();
+        }
+
+        String base = "http://localhost:" + port;
+        HttpClient client = HttpClient.newHttpClient();
+
+        System.out.printf("%d clients for %d s against %s%n", clients, seconds, base);
+        run(client, base, clients, TimeUnit.SECONDS.toNanos(1));
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder failures = new LongAdder();
+        long nanos = run(client, base, clients, TimeUnit.SECONDS.toNanos(seconds), latency, failures);
+
+        System.out.printf("%,d requests in %.1f s: %,.0f requests/s, %,d failed%n", latency.getCount(), nanos / 1e9,
+            latency.getCount() * 1e9 / nanos, failures.sum());
+        System.out.println("Latency: " + latency.summary());
+
+        if (server != null) {
+            System.out.print(server.getVendingMachine().getMetrics().dump());
+            server.close();
+        }
+    }
+
+    // This method warms up the server and the client without recording anything.
+    private static void run(HttpClient client, String base, int clients, long nanos) throws InterruptedException {
+        run(client, base, clients, nanos, new LatencyHistogram(), new LongAdder());
+    }
+
+    // This method keeps up to clients requests in flight until the time is up, waits for the last ones, and
+    // returns how long it took. Responses other than 2xx or 404 count as failures.
+    private static long run(HttpClient client, String base, int clients, long nanos, LatencyHistogram latency,
+            LongAdder failures) throws InterruptedException {
+
+        Semaphore inFlight = new Semaphore(clients);
+        Random random = new Random(42);
+        long start = System.nanoTime();
+
+        while (System.nanoTime() - start < nanos) {
+            inFlight.acquire();
+
+            HttpRequest request = nextRequest(base, random);
+            long sent = System.nanoTime();
+
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                latency.record(System.nanoTime() - sent);
+
+                if (error != null || response.statusCode() >= 300 && response.statusCode() != 404
+                        && response.statusCode() != 409) {
+                    failures.increment();
+                }
+
+                inFlight.release();
+            });
+        }
+
+        inFlight.acquire(clients);
+        return System.nanoTime() - start;
+    }
+
+    // This method returns a random request: 80% lookups, 10% sales and 10% new cars.
+    private static HttpRequest nextRequest(String base, Random random) {
+
+        int floor = random.nextInt(FLOORS) + 1;
+        int space = random.nextInt(SPACES) + 1;
+        int pick = random.nextInt(10);
+
+        if (pick < 8) {
+            return HttpRequest.newBuilder(URI.create(base + "/cars/" + floor + "/" + space)).GET().build();
+        }
+
+        if (pick < 9) {
+            return HttpRequest.newBuilder(URI.create(base + "/cars/" + floor + "/" + space)).DELETE().build();
+        }
+
+        return HttpRequest.newBuilder(URI.create(base + "/cars?type=P&floor=" + floor + "&space=" + space
+            + "&year=2024&price=31999.99&make=Tesla&model=Model3")).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+}
@@ -0,0 +1,320 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+// This class counts the calls to the main vending machine operations and records how long they take.
+// Attach it with VendingMachine.setMetrics. Without it, each operation only checks that no metrics are
+// attached. The numbers can be read in code, printed as a plain-text table with dump(), or watched over JMX
+// once register() has been called, e.g. in JConsole under VendingMachine:type=Metrics.
+//
+// Every call is counted exactly with a LongAdder, which costs a few nanoseconds and does not slow down
+// threads counting at the same time. Reading the clock twice costs more than that, so by default only one
+// call in 64 of the quick operations (add, get and sell) is timed, picked at random per thread. Slow
+// operations such as printing and loading are always timed.
+public class VendingMachineMetrics implements DynamicMBean {
+
+    // This enum names the operations that are measured.
+    public enum Operation {
+        ADD_CAR("addCar", false),
+        GET_CAR("getCar", false),
+        SELL_CAR("sellCar", false),
+        PRINT_SORTED_INVENTORY("printSortedInventory", true),
+        PRINT_CARS_BY_MAKE_TYPE("printCarsByMakeType", true),
+        LOAD_CAR_DATA("loadCarData", true);
+
+        private final String label;
+        private final boolean alwaysTimed;
+
+        Operation(String label, boolean alwaysTimed) {
+            this.label = label;
+            this.alwaysTimed = alwaysTimed;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // The start time returned for a call that is counted but not timed.
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final String[] STATISTICS = { "Count", "Failures", "MeanMicros", "P50Micros", "P99Micros",
+        "MaxMicros" };
+
+    private final LongAdder[] calls = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] failures = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private volatile int sampleMask;
+    private ObjectName objectName;
+
+    // The constructor times one call in 64 of the quick operations.
+    public VendingMachineMetrics() {
+        this(64);
+    }
+
+    // This constructor takes how many quick calls there are per timed call, rounded up to a power of two.
+    // Pass 1 to time every call.
+    public VendingMachineMetrics(int sampleInterval) {
+
+        for (Operation operation : OPERATIONS) {
+            calls[operation.ordinal()] = new LongAdder();
+            failures[operation.ordinal()] = new LongAdder();
+            latencies[operation.ordinal()] = new LatencyHistogram();
+        }
+
+        setSampleInterval(sampleInterval);
+    }
+
+    // This method sets how many quick calls there are per timed call, rounded up to a power of two.
+    public void setSampleInterval(int sampleInterval) {
+
+        if (sampleInterval < 1 || sampleInterval > 1 << 30) {
+            throw new IllegalArgumentException("The sample interval must be from 1 to 2^30.");
+        }
+
+        sampleMask = sampleInterval == 1 ? 0 : (Integer.highestOneBit(sampleInterval - 1) << 1) - 1;
+    }
+
+    public int getSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    // This method is called as an operation begins. It returns the time to pass to end(), or NOT_TIMED if
+    // this call is only counted.
+    long start(Operation operation) {
+
+        if (operation.alwaysTimed || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0) {
+            return System.nanoTime();
+        }
+
+        return NOT_TIMED;
+    }
+
+    // This method is called as an operation ends. succeeded is false if, for example, a space was taken or
+    // had no car in it.
+    void end(Operation operation, long start, boolean succeeded) {
+
+        int index = operation.ordinal();
+        calls[index].increment();
+
+        if (!succeeded) {
+            failures[index].increment();
+        }
+
+        if (start != NOT_TIMED) {
+            latencies[index].record(System.nanoTime() - start);
+        }
+    }
+
+    // This method returns how many calls of an operation have ended.
+    public long getCount(Operation operation) {
+        return calls[operation.ordinal()].sum();
+    }
+
+    // This method returns how many calls of an operation did not succeed.
+    public long getFailures(Operation operation) {
+        return failures[operation.ordinal()].sum();
+    }
+
+    // This method returns the durations of the timed calls of an operation.
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    // This method clears every count and duration.
+    public void reset() {
+
+        for (Operation operation : OPERATIONS) {
+            calls[operation.ordinal()].reset();
+            failures[operation.ordinal()].reset();
+            latencies[operation.ordinal()].reset();
+        }
+    }
+
+    // This method returns a plain-text table with a line per operation. Durations are in microseconds.
+    public String dump() {
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-22s %12s %10s %10s %10s %10s %10s %10s%n", "operation", "count",
+            "failures", "timed", "mean", "p50", "p99", "max"));
+
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram latency = getLatency(operation);
+
+            table.append(String.format(Locale.ROOT, "%-22s %12d %10d %10d %10.1f %10.1f %10.1f %10.1f%n",
+                operation.getLabel(), getCount(operation), getFailures(operation), latency.getCount(),
+                latency.getMean() / 1e3, latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+                latency.getMax() / 1e3));
+        }
+
+        return table.toString();
+    }
+
+    // This method registers the metrics with the platform MBean server as VendingMachine:type=Metrics,name=
+    // followed by the given name, replacing anything already registered under that name.
+    public void register(String name) throws JMException {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName newName = new ObjectName("VendingMachine:type=Metrics,name=" + ObjectName.quote(name));
+
+        if (server.isRegistered(newName)) {
+            server.unregisterMBean(newName);
+        }
+
+        unregister();
+        server.registerMBean(this, newName);
+        objectName = newName;
+    }
+
+    // This method removes the metrics from the MBean server if they were registered.
+    public void unregister() throws JMException {
+
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    // This method returns an attribute such as "sellCarP99Micros" to JMX.
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+
+        if (attribute.equals("SampleInterval")) {
+            return getSampleInterval();
+        }
+
+        for (Operation operation : OPERATIONS) {
+            if (!attribute.startsWith(operation.getLabel())) {
+                continue;
+            }
+
+            String statistic = attribute.substring(operation.getLabel().length());
+            LatencyHistogram latency = getLatency(operation);
+
+            switch (statistic) {
+                case "Count":
+                    return getCount(operation);
+                case "Failures":
+                    return getFailures(operation);
+                case "MeanMicros":
+                    return latency.getMean() / 1e3;
+                case "P50Micros":
+                    return latency.getPercentile(50) / 1e3;
+                case "P99Micros":
+                    return latency.getPercentile(99) / 1e3;
+                case "MaxMicros":
+                    return latency.getMax() / 1e3;
+                default:
+                    break;
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    // Every attribute but the sample interval is read-only.
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+
+        if (!attribute.getName().equals("SampleInterval")) {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        setSampleInterval((Integer) attribute.getValue());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+
+        AttributeList list = new AttributeList();
+
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            }
+
+            catch (AttributeNotFoundException e) {
+                // JMX leaves unknown attributes out of the list.
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+
+        AttributeList set = new AttributeList();
+
+        for (Attribute attribute : attributes.asList()) {
+            try {
+                setAttribute(attribute);
+                set.add(attribute);
+            }
+
+            catch (AttributeNotFoundException | RuntimeException e) {
+                // JMX leaves attributes that could not be set out of the list.
+            }
+        }
+
+        return set;
+    }
+
+    // This method runs the reset and dump operations for JMX.
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+
+        if (actionName.equals("reset")) {
+            reset();
+            return null;
+        }
+
+        if (actionName.equals("dump")) {
+            return dump();
+        }
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        attributes.add(new MBeanAttributeInfo("SampleInterval", "int", "Quick calls per timed call", true, true,
+            false));
+
+        for (Operation operation : OPERATIONS) {
+            for (String statistic : STATISTICS) {
+                boolean count = statistic.equals("Count") || statistic.equals("Failures");
+
+                attributes.add(new MBeanAttributeInfo(operation.getLabel() + statistic, count ? "long" : "double",
+                    statistic + " of " + operation.getLabel(), true, false, false));
+            }
+        }
+
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("reset", "Clears every count and duration", null, "void",
+                MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo("dump", "Returns a plain-text table of the metrics", null, "java.lang.String",
+                MBeanOperationInfo.INFO)
+        };
+
+        return new MBeanInfo(getClass().getName(), "Vending machine operation metrics",
+            attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+    }
+}
@@ -0,0 +1,399 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+// This class serves a vending machine over HTTP with JSON responses, using the HTTP server built into the
+// JDK. The vending machine must be concurrent, since requests are handled on many threads at once.
+//
+//   GET    /cars                              every car
+//   GET    /cars?sort=price|year|alphabetical the inventory in sorted order
+//   GET    /cars?make=Toyota&type=P           cars of a make and type
+//   GET    /cars/{floor}/{space}              the car at a position
+//   POST   /cars?type=B&floor=1&space=2&year=2017&price=28000&make=Toyota&model=Prius
+//   DELETE /cars/{floor}/{space}              sell the car at a position
+//   POST   /wash/{floor}/{space}              put a car in the wash queue
+//   POST   /wash                              process the wash queue
+//   GET    /stats                             inventory and sales totals
+//   GET    /metrics                           operation counts and latencies as a plain-text table
+//
+// Listings are streamed: the response is chunked and cars are written through an InventoryRenderer as the
+// index is walked, so a large listing is never held in memory as a whole.
+public class VendingMachineServer implements Closeable {
+
+    private final VendingMachine vendingMachine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // The constructor serves on a port of the local machine, handling each request on a thread from a
+    // cached pool. Pass port 0 to pick a free port.
+    public VendingMachineServer(VendingMachine vendingMachine, int port) throws IOException {
+        this(vendingMachine, new InetSocketAddress(port), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // This constructor takes the factory that creates the request threads, e.g. a virtual thread factory
+    // on Java 21 or later, where one thread per request costs next to nothing.
+    public VendingMachineServer(VendingMachine vendingMachine, InetSocketAddress address, ThreadFactory threadFactory)
+            throws IOException {
+
+        if (!vendingMachine.isConcurrent()) {
+            throw new IllegalArgumentException("The vending machine must be concurrent to be served over HTTP.");
+        }
+
+        this.vendingMachine = vendingMachine;
+        this.executor = Executors.newCachedThreadPool(threadFactory);
+        this.server = HttpServer.create(address, 1024);
+
+        server.createContext("/cars", this::handleCars);
+        server.createContext("/wash", this::handleWash);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+    }
+
+    // This program serves a new vending machine, e.g. java VendingMachineServer 8080 10 100 cars.txt
+    // Its metrics are also registered over JMX. A car data file is loaded and then followed, so cars
+    // appended to it later are added as well.
+    public static void main(String[] args) throws IOException, JMException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int floors = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int spaces = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        VendingMachine vendingMachine = new VendingMachine(floors, spaces, true);
+        VendingMachineMetrics metrics = new VendingMachineMetrics();
+
+        vendingMachine.setMetrics(metrics);
+        metrics.register("server-" + port);
+
+        if (args.length > 3) {
+            CarDataTailer tailer = new CarDataTailer(vendingMachine, Paths.get(args[3]), 1000);
+            tailer.poll();
+            tailer.start();
+        }
+
+        VendingMachineServer server = new VendingMachineServer(vendingMachine, port);
+        server.start();
+        System.out.println("Serving a " + floors + "x" + spaces + " vending machine on port " + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public VendingMachine getVendingMachine() {
+        return vendingMachine;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // This method stops accepting requests, gives running requests a second to finish, and stops the threads.
+    @Override
+    public void close() {
+
+        server.stop(1);
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // This method handles /cars and /cars/{floor}/{space}.
+    private void handleCars(HttpExchange exchange) throws IOException {
+
+        try {
+            String method = exchange.getRequestMethod();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int[] position = parsePosition(exchange, "/cars");
+
+            if (position != null && method.equals("GET")) {
+                Car car = vendingMachine.peekCar(position[0], position[1]);
+                sendCar(exchange, car == null ? 404 : 200, car);
+            }
+
+            else if (position != null && method.equals("DELETE")) {
+                Car car = vendingMachine.sellCar(position[0], position[1], false);
+                sendCar(exchange, car == null ? 404 : 200, car, position[0], position[1]);
+            }
+
+            else if (position == null && method.equals("GET")) {
+                sendListing(exchange, query);
+            }
+
+            else if (position == null && method.equals("POST")) {
+                addCar(exchange, query);
+            }
+
+            else {
+                sendError(exchange, 405, "Method not allowed");
+            }
+        }
+
+        catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+
+        finally {
+            exchange.close();
+        }
+    }
+
+    // This method handles /wash and /wash/{floor}/{space}.
+    private void handleWash(HttpExchange exchange) throws IOException {
+
+        try {
+            int[] position = parsePosition(exchange, "/wash");
+
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "Method not allowed");
+            }
+
+            else if (position == null) {
+                vendingMachine.processCarWashQueue();
+                sendJson(exchange, 200, "{\"processed\":true}");
+            }
+
+            else {
+                Car car = vendingMachine.addCarToWash(position[0], position[1], false);
+
+                if (car == null && vendingMachine.peekCar(position[0], position[1]) != null) {
+                    sendError(exchange, 503, "The car wash is not taking cars");
+                }
+
+                else {
+                    sendCar(exchange, car == null ? 404 : 200, car);
+                }
+            }
+        }
+
+        catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+
+        finally {
+            exchange.close();
+        }
+    }
+
+    // This method handles /stats.
+    private void handleStats(HttpExchange exchange) throws IOException {
+
+        try {
+            InventoryStats stats = vendingMachine.getStats();
+
+            String json = String.format(Locale.ROOT, "{\"cars\":%d,\"totalValue\":%.2f,\"sold\":%d,\"bankroll\":%.2f}",
+                stats.getCarCount(), stats.getTotalValueCents() / 100.0, stats.getSoldCount(),
+                stats.getRevenueCents() / 100.0);
+
+            sendJson(exchange, 200, json);
+        }
+
+        finally {
+            exchange.close();
+        }
+    }
+
+    // This method handles /metrics. It answers 404 if the vending machine has no metrics attached.
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+
+        try {
+            VendingMachineMetrics metrics = vendingMachine.getMetrics();
+
+            if (metrics == null) {
+                sendError(exchange, 404, "Metrics are not enabled");
+                return;
+            }
+
+            byte[] body = metrics.dump().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+
+        finally {
+            exchange.close();
+        }
+    }
+
+    // This method adds the car described by the query and answers 201 with the car, or 409 if the space
+    // is taken or outside the vending machine.
+    private void addCar(HttpExchange exchange, Map<String, String> query) throws IOException {
+
+        String type = require(query, "type");
+        int floor = Integer.parseInt(require(query, "floor"));
+        int space = Integer.parseInt(require(query, "space"));
+        int year = Integer.parseInt(require(query, "year"));
+        double price = Double.parseDouble(require(query, "price"));
+        String make = require(query, "make");
+        String model = require(query, "model");
+
+        if (!type.equalsIgnoreCase("B") && !type.equalsIgnoreCase("P")) {
+            throw new IllegalArgumentException("type must be B or P");
+        }
+
+        Car car = type.equalsIgnoreCase("P") ? new PremiumCar(year, price, make, model)
+            : new BasicCar(year, price, make, model);
+
+        if (!vendingMachine.addCar(car, floor, space)) {
+            sendError(exchange, 409, "Space (" + floor + ", " + space + ") is taken or does not exist");
+            return;
+        }
+
+        sendCar(exchange, 201, car);
+    }
+
+    // This method streams the cars asked for by the query as a JSON array.
+    private void sendListing(HttpExchange exchange, Map<String, String> query) throws IOException {
+
+        Collection<Car> cars;
+
+        if (query.containsKey("sort")) {
+            cars = vendingMachine.getSortedInventory(query.get("sort"));
+        }
+
+        else if (query.containsKey("make")) {
+            cars = vendingMachine.getCarsByMakeType(query.get("make"), query.getOrDefault("type", ""));
+        }
+
+        else {
+            cars = vendingMachine.getInventory();
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+
+        InventoryRenderer renderer = new InventoryRenderer(
+            new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        boolean first = true;
+
+        renderer.write("[");
+
+        for (Car car : cars) {
+            renderer.write(first ? "\n" : ",\n").writeJson(car);
+            first = false;
+        }
+
+        renderer.write("\n]\n");
+        renderer.flush();
+    }
+
+    // This method sends a car, or an error if the car is null.
+    private static void sendCar(HttpExchange exchange, int status, Car car) throws IOException {
+
+        if (car == null) {
+            sendError(exchange, status, "No car at that position");
+            return;
+        }
+
+        // The car may be sold while it is written, so its position is read only once.
+        sendCar(exchange, status, car, car.getFloor(), car.getSpace());
+    }
+
+    // This method answers with a car at a given position, such as the position a sold car was sold from.
+    private static void sendCar(HttpExchange exchange, int status, Car car, int floor, int space) throws IOException {
+
+        if (car == null) {
+            sendError(exchange, status, "No car at that position");
+            return;
+        }
+
+        StringWriter json = new StringWriter();
+        new InventoryRenderer(json).writeJson(car, floor, space).flush();
+
+        sendJson(exchange, status, json.toString());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+    }
+
+    // This method sends a small JSON body with its length known up front.
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+
+        byte[] body = (json + "\n").getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // This method returns the position in a path such as /cars/3/14, or null if the path has no position.
+    private static int[] parsePosition(HttpExchange exchange, String context) {
+
+        String path = exchange.getRequestURI().getPath();
+        String rest = path.length() > context.length() ? path.substring(context.length() + 1) : "";
+
+        if (rest.isEmpty()) {
+            return null;
+        }
+
+        String[] parts = rest.split("/");
+
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected " + context + "/{floor}/{space}");
+        }
+
+        return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+
+        Map<String, String> query = new HashMap<>();
+
+        if (rawQuery == null) {
+            return query;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return query;
+    }
+
+    private static String require(Map<String, String> query, String name) {
+
+        String value = query.get(name);
+
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+
+        return value;
+    }
+}
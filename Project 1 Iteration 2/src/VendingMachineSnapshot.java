@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+
+// This class saves the full state of a vending machine to a compact binary file and restores it. A
+// snapshot holds the lot size, the sales figures, the make and model dictionaries, every car with its
+// position, and the built-in wash queue in order. Cars are fixed-size records, so a restore maps the
+// file, reads every car in one pass, and rebuilds the indexes in bulk with restoreInventory.
+//
+// Layout (big-endian):
+//   int magic, int version, int floors, int spaces, long revenueCents, long soldCount, long logSequence,
+//   int makeCount, makeCount strings, int modelCount, modelCount strings,
+//   int carCount, carCount car records, int washCount, washCount car records
+// where a string is an int byte length followed by UTF-8 bytes, and a car record is
+//   int floor, int space, byte type, int year, long priceCents, int makeId, int modelId.
+// logSequence is the last MutationLog record the snapshot includes. Version 1 snapshots have no
+// logSequence and are read as if it were 0.
+public class VendingMachineSnapshot {
+
+    private static final int MAGIC = 0x43564D53;
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int CAR_RECORD_SIZE = 29;
+
+    // This method writes the state of a vending machine to a file. The snapshot is written to a temporary
+    // file first and moved into place, so a crash never leaves a half-written snapshot behind. In
+    // concurrent mode every floor is locked while the cars are written.
+    public static void write(VendingMachine vendingMachine, Path file) throws IOException {
+        write(vendingMachine, file, 0);
+    }
+
+    // This method writes a snapshot that includes every mutation log record up to logSequence, so that
+    // recovery replays only the records after it.
+    static void write(VendingMachine vendingMachine, Path file, long logSequence) throws IOException {
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            vendingMachine.lockAllFloors();
+
+            try {
+                InventoryStats stats = vendingMachine.getStats();
+
+                buffer.putInt(MAGIC).putInt(VERSION);
+                buffer.putInt(vendingMachine.getFloors()).putInt(vendingMachine.getSpaces());
+                buffer.putLong(stats.getRevenueCents()).putLong(stats.getSoldCount()).putLong(logSequence);
+
+                writeDictionary(channel, buffer, Car.MAKES);
+                writeDictionary(channel, buffer, Car.MODELS);
+                writeCars(channel, buffer, vendingMachine.getInventory());
+                writeCars(channel, buffer, vendingMachine.getWashQueue());
+            }
+
+            finally {
+                vendingMachine.unlockAllFloors();
+            }
+
+            drain(channel, buffer);
+            channel.force(true);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // This method restores a vending machine from a snapshot.
+    public static VendingMachine read(Path file) throws IOException {
+        return read(file, false);
+    }
+
+    // This method restores a vending machine from a snapshot, choosing whether it is concurrent.
+    public static VendingMachine read(Path file, boolean concurrent) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = readVersion(buffer, file);
+
+            VendingMachine vendingMachine = new VendingMachine(buffer.getInt(), buffer.getInt(), concurrent);
+            vendingMachine.getStats().restoreSales(buffer.getLong(), buffer.getLong());
+
+            if (version >= 2) {
+                buffer.getLong();
+            }
+
+            int[] makeIds = readDictionary(buffer, Car.MAKES);
+            int[] modelIds = readDictionary(buffer, Car.MODELS);
+            Car[] cars = new Car[buffer.getInt()];
+
+            for (int i = 0; i < cars.length; i++) {
+                int floor = buffer.getInt();
+                int space = buffer.getInt();
+                cars[i] = readCar(buffer, makeIds, modelIds);
+                cars[i].setPosition(floor, space);
+            }
+
+            vendingMachine.restoreInventory(cars);
+
+            int washCount = buffer.getInt();
+
+            for (int i = 0; i < washCount; i++) {
+                int floor = buffer.getInt();
+                int space = buffer.getInt();
+                Car car = readCar(buffer, makeIds, modelIds);
+                Car parked = vendingMachine.peekCar(floor, space);
+
+                vendingMachine.restoreWashQueue(parked != null ? parked : car);
+            }
+
+            return vendingMachine;
+        }
+    }
+
+    // This method returns the last mutation log record included in a snapshot.
+    static long readLogSequence(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(40);
+
+            channel.read(buffer, 0);
+            buffer.flip();
+
+            if (readVersion(buffer, file) < 2 || buffer.limit() < 40) {
+                return 0;
+            }
+
+            return buffer.getLong(32);
+        }
+    }
+
+    // This method checks the magic number and returns the format version.
+    private static int readVersion(ByteBuffer buffer, Path file) throws IOException {
+
+        int version = buffer.remaining() < 8 || buffer.getInt() != MAGIC ? -1 : buffer.getInt();
+
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Not a vending machine snapshot: " + file);
+        }
+
+        return version;
+    }
+
+    // This method writes every string of a dictionary in id order.
+    private static void writeDictionary(FileChannel channel, ByteBuffer buffer, StringDictionary dictionary)
+            throws IOException {
+
+        int size = dictionary.size();
+
+        ensureRoom(channel, buffer, 4);
+        buffer.putInt(size);
+
+        for (int id = 0; id < size; id++) {
+            byte[] bytes = dictionary.get(id).getBytes(StandardCharsets.UTF_8);
+
+            ensureRoom(channel, buffer, 4 + bytes.length);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    // This method reads a saved dictionary and returns, for each saved id, the id of the same string in
+    // the live dictionary.
+    private static int[] readDictionary(ByteBuffer buffer, StringDictionary dictionary) {
+
+        int[] ids = new int[buffer.getInt()];
+        byte[] bytes = new byte[64];
+
+        for (int i = 0; i < ids.length; i++) {
+            int length = buffer.getInt();
+
+            if (length > bytes.length) {
+                bytes = new byte[length];
+            }
+
+            buffer.get(bytes, 0, length);
+            ids[i] = dictionary.idOf(bytes, 0, length);
+        }
+
+        return ids;
+    }
+
+    // This method writes a count followed by a record for each car.
+    private static void writeCars(FileChannel channel, ByteBuffer buffer, Collection<Car> cars) throws IOException {
+
+        ensureRoom(channel, buffer, 4);
+        buffer.putInt(cars.size());
+
+        for (Car car : cars) {
+            ensureRoom(channel, buffer, CAR_RECORD_SIZE);
+            buffer.putInt(car.getFloor()).putInt(car.getSpace());
+            buffer.put((byte) car.getType()).putInt(car.getYear()).putLong(car.getPriceCents());
+            buffer.putInt(car.getMakeId()).putInt(car.getModelId());
+        }
+    }
+
+    // This method reads the part of a car record after its position.
+    private static Car readCar(ByteBuffer buffer, int[] makeIds, int[] modelIds) {
+
+        byte type = buffer.get();
+        int year = buffer.getInt();
+        double price = buffer.getLong() / 100.0;
+        int makeId = makeIds[buffer.getInt()];
+        int modelId = modelIds[buffer.getInt()];
+
+        if (type == 'P') {
+            return new PremiumCar(year, price, makeId, modelId);
+        }
+
+        return new BasicCar(year, price, makeId, modelId);
+    }
+
+    // This method writes the buffer out if fewer than needed bytes are free in it.
+    private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            drain(channel, buffer);
+        }
+
+        if (buffer.remaining() < needed) {
+            throw new IOException("Snapshot entry of " + needed + " bytes is too large.");
+        }
+    }
+
+    // This method writes everything in the buffer to the channel and empties the buffer.
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}